@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.IdSet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// сравнение памяти под лайки: прежний HashSet<Long> против IdSet.
+// запуск вручную после mvn -Pbenchmark test-compile: java -cp target/test-classes:target/classes
+//   ru.yandex.practicum.filmorate.benchmark.AdjacencyFootprintBenchmark [фильмов] [лайков на фильм]
+public class AdjacencyFootprintBenchmark {
+    public static void main(String[] args) {
+        int films = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int likesPerFilm = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long edges = (long) films * likesPerFilm;
+
+        long hashSetBytes = measure(films, likesPerFilm, HashSet::new);
+        long idSetBytes = measure(films, likesPerFilm, IdSet::new);
+
+        System.out.printf("связей: %d%n", edges);
+        System.out.printf("HashSet<Long>: %d МБ, %.1f байт на связь%n", hashSetBytes >> 20, (double) hashSetBytes / edges);
+        System.out.printf("IdSet:         %d МБ, %.1f байт на связь%n", idSetBytes >> 20, (double) idSetBytes / edges);
+    }
+
+    private static long measure(int films, int likesPerFilm, Supplier<Set<Long>> factory) {
+        long before = usedHeap();
+        Random random = new Random(42);
+        List<Set<Long>> sets = new ArrayList<>(films);
+        for (int i = 0; i < films; i++) {
+            Set<Long> likes = factory.get();
+            while (likes.size() < likesPerFilm) {
+                // id больше кэша Long.valueOf, как у реальных пользователей
+                likes.add(1_000L + random.nextInt(10_000_000));
+            }
+            sets.add(likes);
+        }
+        long after = usedHeap();
+        // держим ссылку до замера
+        if (sets.size() != films)
+            throw new IllegalStateException();
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
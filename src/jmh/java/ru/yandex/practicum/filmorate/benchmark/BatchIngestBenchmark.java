@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReadCache;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledFilmStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// загрузка лайков по одному и пачкой через FilmService; время - на один лайк.
+// в памяти пачка экономит блокировки и копии множеств лайков, с журналом - ещё и fsync на каждый лайк
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BatchIngestBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"memory", "journal"})
+    String storage;
+
+    BenchmarkData data;
+    FilmService filmService;
+    Path directory;
+    StorageJournal journal;
+    List<Like> likes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = BenchmarkData.generate(100_000, 10_000, 0, 0, 42);
+        FilmStorage filmStorage = data.filmStorage;
+        if (storage.equals("journal")) {
+            directory = Files.createTempDirectory("batch-benchmark");
+            journal = StorageJournal.open(directory, true, new InMemoryFilmStorage(), new InMemoryUserStorage());
+            filmStorage = new JournaledFilmStorage(data.filmStorage, journal);
+        }
+        filmService = new FilmService(filmStorage, data.userStorage, new ReadCache(100_000));
+    }
+
+    // новые лайки на каждую итерацию: пачка с перекосом к популярным фильмам
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        likes = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            likes.add(new Like(data.skewedFilmId(), data.uniformUserId()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (journal == null)
+            return;
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void oneByOne() {
+        for (Like like : likes) {
+            filmService.addLike(like.filmId(), like.userId());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<BatchResult> batch() {
+        return filmService.addLikes(likes);
+    }
+}
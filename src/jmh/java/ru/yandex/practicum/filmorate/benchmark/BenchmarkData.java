@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+// сгенерированные данные для бенчмарков: связи распределены по степенному закону -
+// немногие популярные фильмы и пользователи собирают большую часть лайков и друзей.
+// связи сначала копятся в примитивных массивах и загружаются в хранилища целиком через restore
+public class BenchmarkData {
+    // чем больше показатель, тем сильнее перекос к первым id
+    private static final double SKEW = 3.0;
+
+    public final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+    public final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+    public final int users;
+    public final int films;
+
+    private BenchmarkData(int users, int films) {
+        this.users = users;
+        this.films = films;
+    }
+
+    public static BenchmarkData generate(int users, int films, int avgFriends, int avgLikes, long seed) {
+        BenchmarkData data = new BenchmarkData(users, films);
+        Random random = new Random(seed);
+
+        long[][] friends = buildFriends(random, users, (long) users * avgFriends / 2);
+        for (int i = 0; i < users; i++) {
+            User user = new User();
+            user.setId(i + 1L);
+            user.setEmail("user" + i + "@mail.ru");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1).plusDays(i % 7000));
+            user.setFriends(new IdSet(friends[i]));
+            friends[i] = null;
+            data.userStorage.restore(user);
+        }
+
+        long[][] likes = buildLikes(random, users, films, (long) users * avgLikes);
+        for (int i = 0; i < films; i++) {
+            Film film = new Film();
+            film.setId(i + 1L);
+            film.setName("Film " + i);
+            film.setDescription("description " + i);
+            film.setReleaseDate(LocalDate.of(1950, 1, 1).plusDays(i % 25000));
+            film.setDuration(60 + i % 120);
+            film.setLikes(new IdSet(likes[i]));
+            likes[i] = null;
+            data.filmStorage.restore(film);
+        }
+        return data;
+    }
+
+    // id пользователя с перекосом к популярным
+    public long skewedUserId() {
+        return skewed(ThreadLocalRandom.current(), users) + 1;
+    }
+
+    public long skewedFilmId() {
+        return skewed(ThreadLocalRandom.current(), films) + 1;
+    }
+
+    public long uniformUserId() {
+        return ThreadLocalRandom.current().nextInt(users) + 1L;
+    }
+
+    private static long[][] buildFriends(Random random, int users, long edges) {
+        int[] from = new int[(int) edges];
+        int[] to = new int[(int) edges];
+        int[] degree = new int[users];
+        int count = 0;
+        for (long i = 0; i < edges; i++) {
+            int a = random.nextInt(users);
+            int b = skewed(random, users);
+            if (a == b)
+                continue;
+            from[count] = a;
+            to[count] = b;
+            degree[a]++;
+            degree[b]++;
+            count++;
+        }
+        long[][] adjacency = allocate(degree);
+        int[] position = new int[users];
+        for (int i = 0; i < count; i++) {
+            adjacency[from[i]][position[from[i]]++] = to[i] + 1L;
+            adjacency[to[i]][position[to[i]]++] = from[i] + 1L;
+        }
+        return adjacency;
+    }
+
+    private static long[][] buildLikes(Random random, int users, int films, long edges) {
+        int[] user = new int[(int) edges];
+        int[] film = new int[(int) edges];
+        int[] degree = new int[films];
+        for (int i = 0; i < edges; i++) {
+            user[i] = random.nextInt(users);
+            film[i] = skewed(random, films);
+            degree[film[i]]++;
+        }
+        long[][] adjacency = allocate(degree);
+        int[] position = new int[films];
+        for (int i = 0; i < edges; i++) {
+            adjacency[film[i]][position[film[i]]++] = user[i] + 1L;
+        }
+        return adjacency;
+    }
+
+    private static long[][] allocate(int[] degree) {
+        long[][] adjacency = new long[degree.length][];
+        for (int i = 0; i < degree.length; i++) {
+            adjacency[i] = new long[degree[i]];
+        }
+        return adjacency;
+    }
+
+    private static int skewed(Random random, int bound) {
+        return (int) (bound * Math.pow(random.nextDouble(), SKEW));
+    }
+}
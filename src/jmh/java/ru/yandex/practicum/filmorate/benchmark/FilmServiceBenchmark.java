@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReadCache;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// горячие пути FilmService на сгенерированных данных:
+// пользователей - users, фильмов в 10 раз меньше, в среднем 10 лайков на пользователя
+// (users=100000 - миллион лайков).
+// для 10M пользователей: -Djmh.args="FilmServiceBenchmark -p users=10000000 -jvmArgs -Xmx24g"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilmServiceBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int users;
+
+    BenchmarkData data;
+    // кэш нулевого размера: замеряются индексы и хранилище, каждый вызов считается заново
+    FilmService filmService;
+    // с кэшем ответов, как в приложении
+    FilmService cachedFilmService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(users, Math.max(users / 10, 100), 20, 10, 42);
+        filmService = new FilmService(data.filmStorage, data.userStorage, new ReadCache(0));
+        cachedFilmService = new FilmService(data.filmStorage, data.userStorage, new ReadCache(100_000));
+    }
+
+    @Benchmark
+    public List<Film> getPopular() {
+        return filmService.getPopular(10);
+    }
+
+    // тот же список из кэша: между вызовами лайков нет, почти каждый вызов - попадание
+    @Benchmark
+    public List<Film> getPopularCached() {
+        return cachedFilmService.getPopular(10);
+    }
+
+    // лайк и его снятие в паре, чтобы распределение лайков не уплывало за время замера;
+    // с кэшем, потому что в приложении лайк ещё и сбрасывает зависящие от него записи
+    @Benchmark
+    public void likeAndUnlike() {
+        long filmId = data.skewedFilmId();
+        long userId = data.uniformUserId();
+        cachedFilmService.addLike(filmId, userId);
+        cachedFilmService.removeLike(filmId, userId);
+    }
+
+    // соседи по общим лайкам и голосование за их фильмы
+    @Benchmark
+    public List<Film> getFilmRecommendations() {
+        return filmService.getFilmRecommendations(data.uniformUserId(), 10);
+    }
+}
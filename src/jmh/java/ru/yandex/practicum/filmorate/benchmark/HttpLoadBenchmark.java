@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// нагрузка по HTTP на запущенное приложение: 1000 одновременных клиентов против пула потоков Tomcat
+// (200 потоков по умолчанию), против виртуальных потоков (spring.threads.virtual.enabled)
+// и против WebFlux на Netty (spring.main.web-application-type=reactive).
+// Throughput - запросы в миллисекунду, SampleTime - распределение задержек с p99 и p99.9.
+// разница заметна там, где запрос ждёт: запись лайка в базу пачкой (jdbc) упирается в число потоков,
+// которые могут одновременно ждать общий commit
+// запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.args="HttpLoadBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1000)
+public class HttpLoadBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 1_000;
+
+    // platform - Tomcat с пулом потоков, virtual - Tomcat с виртуальными потоками, reactive - WebFlux
+    @Param({"platform", "virtual", "reactive"})
+    String stack;
+
+    @Param({"memory", "jdbc"})
+    String storage;
+
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + stack.equals("virtual"),
+                        "spring.main.web-application-type=" + (stack.equals("reactive") ? "reactive" : "servlet"),
+                        "spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN");
+        if (storage.equals("jdbc"))
+            application.profiles("h2");
+        context = application.run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setEmail("load" + i + "@mail.ru");
+            user.setLogin("load" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(user);
+        }
+        context.getBean(UserService.class).createAll(users);
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            films.add(film);
+        }
+        context.getBean(FilmService.class).createAll(films);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        context.close();
+    }
+
+    // запись: лайк или его снятие, в базе - ожидание общего commit пачки
+    @Benchmark
+    public int like() throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String path = "/films/" + (random.nextInt(FILMS) + 1) + "/like/" + (random.nextInt(USERS) + 1);
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path));
+        request = random.nextBoolean()
+                ? request.PUT(HttpRequest.BodyPublishers.noBody())
+                : request.DELETE();
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int popular() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/films/popular?count=10")).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    // потоковая выгрузка всех пользователей: ответ долгий, сервер держит по странице на клиента
+    @Benchmark
+    public int export() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/users"))
+                .header("Accept", "application/x-ndjson")
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
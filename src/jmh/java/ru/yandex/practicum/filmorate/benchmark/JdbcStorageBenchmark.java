@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.JdbcBatchWriter;
+import ru.yandex.practicum.filmorate.storage.jdbc.JdbcFilmStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.JdbcUserStorage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// хранилище в памяти против хранилища в базе (встроенная H2 в памяти, без сети) на одних и тех же данных:
+// топ фильмов, общие друзья и лайки из нескольких потоков, которые в базе пишутся пачками
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JdbcStorageBenchmark {
+    @Param({"memory", "jdbc"})
+    String storage;
+
+    @Param({"20000"})
+    int users;
+
+    BenchmarkData data;
+    FilmStorage filmStorage;
+    UserStorage userStorage;
+    HikariDataSource dataSource;
+    JdbcBatchWriter batchWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(users, 10_000, 20, 10, 42);
+        if (storage.equals("memory")) {
+            filmStorage = data.filmStorage;
+            userStorage = data.userStorage;
+            return;
+        }
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(32);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(dataSource);
+        TransactionTemplate transaction = new TransactionTemplate(new JdbcTransactionManager(dataSource));
+        batchWriter = new JdbcBatchWriter(jdbc, transaction);
+        JdbcUserStorage jdbcUsers = new JdbcUserStorage(jdbc, transaction, batchWriter);
+        JdbcFilmStorage jdbcFilms = new JdbcFilmStorage(jdbc, transaction, batchWriter);
+        jdbcUsers.restoreAll(data.userStorage.findAll());
+        jdbcFilms.restoreAll(data.filmStorage.findAll());
+        filmStorage = jdbcFilms;
+        userStorage = jdbcUsers;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (dataSource != null) {
+            batchWriter.close();
+            dataSource.close();
+        }
+    }
+
+    @Benchmark
+    public List<Film> getPopular() {
+        return filmStorage.getPopular(10);
+    }
+
+    @Benchmark
+    public int countCommonFriends() {
+        long userId = data.uniformUserId();
+        long otherId = data.skewedUserId();
+        return userStorage.countCommonFriends(userId, otherId);
+    }
+
+    @Benchmark
+    public List<User> findCommonFriends() {
+        long userId = data.uniformUserId();
+        long otherId = data.skewedUserId();
+        return userStorage.findCommonFriends(userId, otherId);
+    }
+
+    // лайк и снятие по очереди, чтобы каждая операция меняла данные
+    @Benchmark
+    @Threads(16)
+    public boolean like() {
+        long filmId = data.skewedFilmId();
+        long userId = data.uniformUserId();
+        return filmStorage.addLike(filmId, userId) || filmStorage.removeLike(filmId, userId);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledFilmStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// цена журнала: пропускная способность лайков с fsync и без него (пачки растут с числом потоков)
+// и время восстановления хранилищ из снимка и хвоста журнала
+public class JournalBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Writes {
+        @Param({"true", "false"})
+        boolean fsync;
+
+        Path directory;
+        StorageJournal journal;
+        JournaledFilmStorage filmStorage;
+        BenchmarkData data;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            data = BenchmarkData.generate(10_000, 2_000, 0, 0, 42);
+            directory = Files.createTempDirectory("journal-benchmark");
+            journal = StorageJournal.open(directory, fsync, new InMemoryFilmStorage(), new InMemoryUserStorage());
+            filmStorage = new JournaledFilmStorage(data.filmStorage, journal);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            journal.close();
+            deleteRecursively(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+        @Param({"100000"})
+        int operations;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            BenchmarkData data = BenchmarkData.generate(10_000, 2_000, 20, 20, 42);
+            directory = Files.createTempDirectory("journal-benchmark");
+            InMemoryFilmStorage films = new InMemoryFilmStorage();
+            InMemoryUserStorage users = new InMemoryUserStorage();
+            try (StorageJournal journal = StorageJournal.open(directory, false, films, users)) {
+                journal.snapshot(data.filmStorage, data.userStorage);
+                JournaledFilmStorage filmStorage = new JournaledFilmStorage(data.filmStorage, journal);
+                for (int i = 0; i < operations; i++) {
+                    filmStorage.addLike(data.skewedFilmId(), data.uniformUserId());
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 3, time = 2)
+    @Fork(1)
+    @Threads(16)
+    public boolean like(Writes state) {
+        long filmId = state.data.skewedFilmId();
+        long userId = state.data.uniformUserId();
+        // лайк и снятие по очереди, чтобы каждая операция что-то меняла и попадала в журнал
+        return state.filmStorage.addLike(filmId, userId) || state.filmStorage.removeLike(filmId, userId);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+    public InMemoryFilmStorage recover(Recovery state) throws IOException {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        StorageJournal.open(state.directory, false, films, new InMemoryUserStorage()).close();
+        return films;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
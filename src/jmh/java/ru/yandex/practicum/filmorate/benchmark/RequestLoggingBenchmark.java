@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// цена журналирования на запрос: off - настройки по умолчанию (Logbook выключен), highload - профиль highload
+// (тоже без Logbook), sampled - профиль highload с явно включённым Logbook, full - Logbook на все запросы
+// с синхронной записью в консоль. сравнивать с тем, что включено по умолчанию, - с off.
+// консоль перенаправлена в target/request-logging.log: запись на диск входит в замер, вывод JMH не засоряется.
+// выделение памяти на запрос: -prof gc, строка gc.alloc.rate.norm (клиент и сервер в одном процессе)
+// запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.args="RequestLoggingBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(64)
+public class RequestLoggingBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 1_000;
+
+    @Param({"off", "highload", "sampled", "full"})
+    String logging;
+
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    String baseUrl;
+    PrintStream console;
+    PrintStream log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws FileNotFoundException {
+        console = System.out;
+        log = new PrintStream(new BufferedOutputStream(new FileOutputStream("target/request-logging.log")), false);
+        System.setOut(log);
+        SpringApplicationBuilder application = new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties("server.port=0");
+        if (logging.equals("full"))
+            application.properties("logging.level.org.zalando.logbook.Logbook=TRACE");
+        else if (logging.equals("highload"))
+            application.profiles("highload");
+        else if (logging.equals("sampled"))
+            application.profiles("highload").properties("logging.level.org.zalando.logbook.Logbook=TRACE");
+        context = application.run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setEmail("log" + i + "@mail.ru");
+            user.setLogin("log" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(user);
+        }
+        context.getBean(UserService.class).createAll(users);
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            films.add(film);
+        }
+        context.getBean(FilmService.class).createAll(films);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        context.close();
+        System.setOut(console);
+        log.close();
+    }
+
+    // запись с событием сервиса на каждый запрос
+    @Benchmark
+    public int like() throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String path = "/films/" + (random.nextInt(FILMS) + 1) + "/like/" + (random.nextInt(USERS) + 1);
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path));
+        request = random.nextBoolean()
+                ? request.PUT(HttpRequest.BodyPublishers.noBody())
+                : request.DELETE();
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    // чтение с телом ответа в несколько килобайт
+    @Benchmark
+    public int popular() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/films/popular?count=10")).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// создание фильма с выдачей id в хранилище, где уже лежит preloaded фильмов;
+// время не должно зависеть от размера хранилища
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StorageBenchmark {
+    @Param({"10000", "1000000"})
+    int preloaded;
+
+    InMemoryFilmStorage filmStorage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        for (long id = 1; id <= preloaded; id++) {
+            Film film = newFilm();
+            film.setId(id);
+            filmStorage.restore(film);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Film create() {
+        return filmStorage.create(newFilm());
+    }
+
+    private static Film newFilm() {
+        Film film = new Film();
+        film.setName("movie");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2002, 4, 14));
+        film.setDuration(125);
+        return film;
+    }
+}
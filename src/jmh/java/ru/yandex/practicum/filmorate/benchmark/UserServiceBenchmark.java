@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ReadCache;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// горячие пути UserService: списки друзей, общие друзья и рекомендации, в среднем 20 друзей на пользователя
+// с перекосом к популярным пользователям
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserServiceBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int users;
+
+    BenchmarkData data;
+    // кэш нулевого размера: замеряются индексы и хранилище, каждый вызов считается заново
+    UserService userService;
+    // с кэшем ответов, как в приложении
+    UserService cachedUserService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.generate(users, 100, 20, 0, 42);
+        userService = new UserService(data.userStorage, data.filmStorage, new ReadCache(0));
+        cachedUserService = new UserService(data.userStorage, data.filmStorage, new ReadCache(100_000));
+    }
+
+    @Benchmark
+    public List<User> getAllFriends() {
+        return userService.getAllFriends(data.skewedUserId());
+    }
+
+    // те же запросы через кэш: доля попаданий зависит от того, сколько списков в него помещается
+    @Benchmark
+    public List<User> getAllFriendsCached() {
+        return cachedUserService.getAllFriends(data.skewedUserId());
+    }
+
+    // обычный пользователь и, как правило, популярный - разные размеры списков
+    @Benchmark
+    public List<User> getCommonFriends() {
+        long userId = data.uniformUserId();
+        long otherId = data.skewedUserId();
+        if (userId == otherId)
+            otherId = userId % data.users + 1;
+        return userService.getCommonFriends(userId, otherId);
+    }
+
+    @Benchmark
+    public List<User> getCommonFriendsCached() {
+        long userId = data.uniformUserId();
+        long otherId = data.skewedUserId();
+        if (userId == otherId)
+            otherId = userId % data.users + 1;
+        return cachedUserService.getCommonFriends(userId, otherId);
+    }
+
+    // обход друзей друзей с отбором первых 10, популярный пользователь - самый тяжёлый случай
+    @Benchmark
+    public List<FriendRecommendation> getFriendRecommendations() {
+        return userService.getFriendRecommendations(data.skewedUserId(), 10);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledFilmStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledUserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// режим с сохранением данных на диск: хранилища в памяти оборачиваются журналом изменений,
+// периодически пишется снимок, при старте данные восстанавливаются из снимка и хвоста журнала.
+// журнал есть только у filmorate.storage.type=memory: с другим типом хранилища приложение не стартует
+@Configuration
+@ConditionalOnProperty(name = "filmorate.storage.journal.enabled", havingValue = "true")
+@EnableScheduling
+@Slf4j
+public class JournalConfig {
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+
+    public JournalConfig(@Value("${filmorate.storage.type:memory}") String storageType,
+                         ObjectProvider<InMemoryFilmStorage> filmStorage,
+                         ObjectProvider<InMemoryUserStorage> userStorage) {
+        if (!storageType.equals("memory"))
+            throw new IllegalStateException("Журнал изменений (filmorate.storage.journal.enabled=true) работает "
+                    + "только с filmorate.storage.type=memory, задано: " + storageType);
+        this.filmStorage = filmStorage.getObject();
+        this.userStorage = userStorage.getObject();
+    }
+
+    @Bean(destroyMethod = "close")
+    public StorageJournal storageJournal(@Value("${filmorate.storage.journal.directory:data}") Path directory,
+                                         @Value("${filmorate.storage.journal.fsync:true}") boolean fsync)
+            throws IOException {
+        return StorageJournal.open(directory, fsync, filmStorage, userStorage);
+    }
+
+    @Bean
+    @Primary
+    public FilmStorage journaledFilmStorage(StorageJournal storageJournal) {
+        return new JournaledFilmStorage(filmStorage, storageJournal);
+    }
+
+    @Bean
+    @Primary
+    public UserStorage journaledUserStorage(StorageJournal storageJournal) {
+        return new JournaledUserStorage(userStorage, storageJournal);
+    }
+
+    @Bean
+    public SnapshotTask snapshotTask(StorageJournal storageJournal) {
+        return new SnapshotTask(storageJournal);
+    }
+
+    public class SnapshotTask {
+        private final StorageJournal storageJournal;
+
+        SnapshotTask(StorageJournal storageJournal) {
+            this.storageJournal = storageJournal;
+        }
+
+        @Scheduled(fixedDelayString = "${filmorate.storage.journal.snapshot-interval:PT10M}",
+                initialDelayString = "${filmorate.storage.journal.snapshot-interval:PT10M}")
+        public void snapshot() {
+            try {
+                storageJournal.snapshot(filmStorage, userStorage);
+            } catch (IOException e) {
+                log.error("Не удалось записать снимок хранилища", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+// журнал запросов и ответов Logbook под нагрузкой (см. профиль highload)
+@Configuration
+public class LoggingConfig {
+
+    // выборка запросов для Logbook: решение принимается до буферизации тел,
+    // запрос вне выборки не копируется и не форматируется.
+    // имя бина заменяет условие по умолчанию из автоконфигурации Logbook
+    @Bean
+    public Predicate<HttpRequest> requestCondition(
+            @Value("${filmorate.logging.sample-rate:1.0}") double sampleRate) {
+        if (sampleRate >= 1.0)
+            return request -> true;
+        return request -> ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
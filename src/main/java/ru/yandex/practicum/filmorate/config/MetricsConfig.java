@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+// метрики приложения, отдаются в формате Prometheus на /actuator/prometheus
+@Configuration
+public class MetricsConfig {
+
+    // включает @Timed на методах сервисов
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder storageMetrics(FilmStorage filmStorage, UserStorage userStorage) {
+        return registry -> {
+            Gauge.builder("filmorate.films", filmStorage, FilmStorage::count)
+                    .description("Количество фильмов")
+                    .register(registry);
+            Gauge.builder("filmorate.likes", filmStorage, FilmStorage::countLikes)
+                    .description("Количество лайков всех фильмов")
+                    .register(registry);
+            Gauge.builder("filmorate.users", userStorage, UserStorage::count)
+                    .description("Количество пользователей")
+                    .register(registry);
+            Gauge.builder("filmorate.friendships", userStorage, UserStorage::countFriendships)
+                    .description("Количество пар друзей")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// реактивный вариант API (spring.main.web-application-type=reactive): контроллеры WebFlux на Netty.
+// хранилища остаются синхронными: короткий вызов хранилища в памяти (в том числе по шардам) без журнала
+// выполняется прямо в потоке цикла событий, а вызовы, которые ждут базу данных или запись журнала на диск,
+// уходят в boundedElastic, чтобы не останавливать цикл событий.
+// полные списки, рекомендации и пакеты обходят и копируют много данных при любом хранилище,
+// поэтому всегда уходят в boundedElastic
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig {
+
+    @Bean
+    public Scheduler storageScheduler(@Value("${filmorate.storage.type:memory}") String storageType,
+                                      @Value("${filmorate.storage.journal.enabled:false}") boolean journal) {
+        if (!storageType.equals("jdbc") && !journal)
+            return Schedulers.immediate();
+        return Schedulers.boundedElastic();
+    }
+
+    @Bean
+    public Scheduler bulkScheduler() {
+        return Schedulers.boundedElastic();
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.function.Supplier;
+
+// сильные ETag из версий объектов, которые хранилище увеличивает при каждом изменении.
+// версия читается до сериализации, поэтому ETag может отстать от тела, но не опередить его:
+// в худшем случае клиент лишний раз получит полный ответ, устаревший ответ он не сохранит.
+// в ETag входит эпоха процесса: после перезапуска версии в памяти начинаются заново
+final class ETags {
+    private static final String EPOCH = Long.toHexString(new SecureRandom().nextLong());
+
+    private ETags() {
+    }
+
+    // If-None-Match совпал - 304 без тела, иначе тело из body и заголовок ETag
+    static <T> ResponseEntity<T> conditional(WebRequest request, String etag, Supplier<T> body) {
+        if (request.checkNotModified(etag))
+            return null;
+        return ResponseEntity.ok().eTag(etag).body(body.get());
+    }
+
+    // то же для WebFlux: при совпадении статус 304 уже выставлен, а тело не запрашивается
+    static <T> Mono<ResponseEntity<T>> conditional(ServerWebExchange exchange, String etag, Supplier<Mono<T>> body) {
+        if (exchange.checkNotModified(etag))
+            return Mono.empty();
+        return body.get().map(value -> ResponseEntity.ok().eTag(etag).body(value));
+    }
+
+    static String film(Film film) {
+        return quote("f" + film.getId() + "-" + film.getVersion());
+    }
+
+    static String user(User user) {
+        return quote("u" + user.getId() + "-" + user.getVersion());
+    }
+
+    // список однозначно задан составом, порядком и версиями элементов
+    static String users(String name, List<User> users) {
+        long hash = users.size();
+        for (User user : users) {
+            hash = mix(hash, user.getId());
+            hash = mix(hash, user.getVersion());
+        }
+        return quote(name + "-" + Long.toHexString(hash));
+    }
+
+    // то же для фильмов; ETag считается по тому же списку, что уйдёт в теле,
+    // поэтому список из кэша, ещё не сброшенного после лайка, не получит ETag нового рейтинга
+    static String films(String name, List<Film> films) {
+        long hash = films.size();
+        for (Film film : films) {
+            hash = mix(hash, film.getId());
+            hash = mix(hash, film.getVersion());
+            hash = mix(hash, film.getLikes().size());
+        }
+        return quote(name + "-" + Long.toHexString(hash));
+    }
+
+    private static String quote(String value) {
+        return "\"" + EPOCH + "-" + value + "\"";
+    }
+
+    // шаг 64-битного хеша с перемешиванием из SplitMix64
+    private static long mix(long hash, long value) {
+        long z = hash * 0x9E3779B97F4A7C15L + value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
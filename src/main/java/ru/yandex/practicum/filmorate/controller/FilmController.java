@@ -2,24 +2,44 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/films")
 @RequiredArgsConstructor
 
 public class FilmController {
     private final FilmService filmService;
+    private final NdjsonStreamer ndjsonStreamer;
 
+    // без параметров - весь список, с параметрами - страница по курсору: ?after=id&limit=n
     @GetMapping
-    public Collection<Film> findAll() {
-        return filmService.findAll();
+    public Collection<Film> findAll(@RequestParam(name = "after", required = false) Long after,
+                                    @RequestParam(name = "limit", required = false) Integer limit) {
+        if (after == null && limit == null)
+            return filmService.findAll();
+        return filmService.findPage(after, limit);
+    }
+
+    // потоковая выгрузка всего списка при Accept: application/x-ndjson
+    @GetMapping(produces = NdjsonStreamer.NDJSON)
+    public StreamingResponseBody export() {
+        return ndjsonStreamer.stream(filmService::findPage, Film::getId);
     }
 
     @PostMapping
@@ -27,14 +47,39 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    // пакетная загрузка: JSON-массив или NDJSON (по объекту в строке, объём не ограничен),
+    // в ответе по результату на каждый элемент в порядке запроса
+    @PostMapping("/batch")
+    public List<BatchResult> createAll(@RequestBody List<Film> films) {
+        return filmService.createAll(films);
+    }
+
+    @PostMapping(path = "/batch", consumes = NdjsonStreamer.NDJSON)
+    public List<BatchResult> importAll(InputStream body) throws IOException {
+        return ndjsonStreamer.ingest(body, Film.class, filmService::createAll);
+    }
+
+    // POST /films/likes/batch: [{"filmId": 1, "userId": 2}, ...]
+    @PostMapping("/likes/batch")
+    public List<BatchResult> addLikes(@RequestBody List<Like> likes) {
+        return filmService.addLikes(likes);
+    }
+
+    @PostMapping(path = "/likes/batch", consumes = NdjsonStreamer.NDJSON)
+    public List<BatchResult> importLikes(InputStream body) throws IOException {
+        return ndjsonStreamer.ingest(body, Like.class, filmService::addLikes);
+    }
+
     @PutMapping
     public Film update(@Valid @RequestBody Film newFilm) {
         return filmService.update(newFilm);
     }
 
+    // ответы с ETag: при совпадении If-None-Match - 304 без тела
     @GetMapping("/{id}")
-    public Film findById(@PathVariable Long id) {
-        return filmService.findById(id);
+    public ResponseEntity<Film> findById(@PathVariable Long id, WebRequest request) {
+        Film film = filmService.findById(id);
+        return ETags.conditional(request, ETags.film(film), () -> film);
     }
 
     // PUT /films/{id}/like/{userId}
@@ -51,8 +96,9 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<Film> getPopular(@RequestParam(name = "count", defaultValue = "10", required = false)
-                                 int size) {
-        return filmService.getPopular(size);
+    public ResponseEntity<List<Film>> getPopular(@RequestParam(name = "count", defaultValue = "10", required = false)
+                                                 int size, WebRequest request) {
+        List<Film> popular = filmService.getPopular(size);
+        return ETags.conditional(request, ETags.films("p" + size, popular), () -> popular);
     }
 }
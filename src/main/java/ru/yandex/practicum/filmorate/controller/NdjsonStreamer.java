@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// выгрузка списка в формате NDJSON: по объекту в строке, страницами по курсору.
+// в памяти держится одна страница, запись идёт в асинхронном потоке, а не в потоке запроса.
+// загрузка в обратную сторону читает строки пачками, так что объём запроса не ограничен памятью
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class NdjsonStreamer {
+    public static final String NDJSON = "application/x-ndjson";
+    private static final int PAGE_SIZE = 500;
+    private static final int INGEST_CHUNK = 1000;
+
+    private final ObjectMapper objectMapper;
+    // объекты пишутся подряд в один генератор: без сброса потока после каждого, сброс - по странице
+    private final ObjectWriter lineWriter;
+
+    public NdjsonStreamer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.lineWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public <T> StreamingResponseBody stream(BiFunction<Long, Integer, List<T>> pageLoader, Function<T, Long> idOf) {
+        return out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                // поток ответа закрывает контейнер сервлетов
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // строки разделяет перевод строки, а не пробел между корневыми значениями по умолчанию
+                generator.setRootValueSeparator(null);
+                long after = 0;
+                List<T> page = pageLoader.apply(after, PAGE_SIZE);
+                while (!page.isEmpty()) {
+                    for (T item : page) {
+                        lineWriter.writeValue(generator, item);
+                        generator.writeRaw('\n');
+                    }
+                    generator.flush();
+                    after = idOf.apply(page.get(page.size() - 1));
+                    page = pageLoader.apply(after, PAGE_SIZE);
+                }
+            }
+        };
+    }
+
+    // строка, которую не удалось разобрать, получает результат INVALID и не мешает остальным;
+    // результаты идут в порядке строк запроса
+    public <T> List<BatchResult> ingest(InputStream body, Class<T> type,
+                                        Function<List<T>, List<BatchResult>> chunkHandler) throws IOException {
+        List<BatchResult> results = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(INGEST_CHUNK);
+        // позиции в results, зарезервированные под элементы текущей пачки
+        List<Integer> positions = new ArrayList<>(INGEST_CHUNK);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank())
+                continue;
+            try {
+                chunk.add(objectMapper.readValue(line, type));
+                positions.add(results.size());
+                results.add(null);
+            } catch (JsonProcessingException e) {
+                results.add(BatchResult.invalid("Некорректная строка NDJSON: " + e.getOriginalMessage()));
+            }
+            if (chunk.size() == INGEST_CHUNK)
+                handleChunk(chunk, positions, results, chunkHandler);
+        }
+        handleChunk(chunk, positions, results, chunkHandler);
+        return results;
+    }
+
+    private static <T> void handleChunk(List<T> chunk, List<Integer> positions, List<BatchResult> results,
+                                        Function<List<T>, List<BatchResult>> chunkHandler) {
+        if (chunk.isEmpty())
+            return;
+        List<BatchResult> chunkResults = chunkHandler.apply(chunk);
+        for (int k = 0; k < chunkResults.size(); k++) {
+            results.set(positions.get(k), chunkResults.get(k));
+        }
+        chunk.clear();
+        positions.clear();
+    }
+}
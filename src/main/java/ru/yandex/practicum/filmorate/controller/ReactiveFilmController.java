@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.service.ReactiveFilmService;
+
+import java.util.List;
+
+// те же маршруты, что у FilmController, на WebFlux
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/films")
+@RequiredArgsConstructor
+public class ReactiveFilmController {
+    private final ReactiveFilmService filmService;
+    private final ReactiveNdjson ndjson;
+
+    // без параметров - весь список, с параметрами - страница по курсору: ?after=id&limit=n
+    @GetMapping
+    public Flux<Film> findAll(@RequestParam(name = "after", required = false) Long after,
+                              @RequestParam(name = "limit", required = false) Integer limit) {
+        if (after == null && limit == null)
+            return filmService.findAll();
+        return filmService.findPage(after, limit);
+    }
+
+    // потоковая выгрузка при Accept: application/x-ndjson: страница читается,
+    // когда клиент принял предыдущую, медленный клиент не копит список в памяти сервера
+    @GetMapping(produces = NdjsonStreamer.NDJSON)
+    public Flux<Film> export() {
+        return filmService.streamAll();
+    }
+
+    @PostMapping
+    public Mono<Film> create(@Valid @RequestBody Film film) {
+        return filmService.create(film);
+    }
+
+    @PostMapping("/batch")
+    public Mono<List<BatchResult>> createAll(@RequestBody List<Film> films) {
+        return filmService.createAll(films);
+    }
+
+    @PostMapping(path = "/batch", consumes = NdjsonStreamer.NDJSON)
+    public Flux<BatchResult> importAll(@RequestBody Flux<String> lines) {
+        return ndjson.ingest(lines, Film.class, filmService::createAll);
+    }
+
+    @PostMapping("/likes/batch")
+    public Mono<List<BatchResult>> addLikes(@RequestBody List<Like> likes) {
+        return filmService.addLikes(likes);
+    }
+
+    @PostMapping(path = "/likes/batch", consumes = NdjsonStreamer.NDJSON)
+    public Flux<BatchResult> importLikes(@RequestBody Flux<String> lines) {
+        return ndjson.ingest(lines, Like.class, filmService::addLikes);
+    }
+
+    @PutMapping
+    public Mono<Film> update(@Valid @RequestBody Film newFilm) {
+        return filmService.update(newFilm);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Film>> findById(@PathVariable Long id, ServerWebExchange exchange) {
+        return filmService.findById(id)
+                .flatMap(film -> ETags.conditional(exchange, ETags.film(film), () -> Mono.just(film)));
+    }
+
+    @PutMapping("/{id}/like/{userId}")
+    public Mono<Void> addLike(@PathVariable("id") Long filmId,
+                              @PathVariable("userId") Long userId) {
+        return filmService.addLike(filmId, userId);
+    }
+
+    @DeleteMapping("/{id}/like/{userId}")
+    public Mono<Void> removeLike(@PathVariable("id") Long filmId,
+                                 @PathVariable("userId") Long userId) {
+        return filmService.removeLike(filmId, userId);
+    }
+
+    @GetMapping("/popular")
+    public Mono<ResponseEntity<List<Film>>> getPopular(@RequestParam(name = "count", defaultValue = "10",
+            required = false) int size, ServerWebExchange exchange) {
+        return filmService.getPopular(size).flatMap(popular ->
+                ETags.conditional(exchange, ETags.films("p" + size, popular), () -> Mono.just(popular)));
+    }
+}
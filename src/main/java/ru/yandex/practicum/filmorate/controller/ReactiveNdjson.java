@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// загрузка NDJSON для WebFlux, как NdjsonStreamer.ingest: строка, которую не удалось разобрать,
+// получает INVALID, результаты идут в порядке строк. следующая пачка строк читается из сети
+// только после обработки предыдущей, так что объём запроса не ограничен памятью
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveNdjson {
+    private static final int INGEST_CHUNK = 1000;
+
+    private final ObjectMapper objectMapper;
+
+    public <T> Flux<BatchResult> ingest(Flux<String> lines, Class<T> type,
+                                        Function<List<T>, Mono<List<BatchResult>>> chunkHandler) {
+        return lines.filter(line -> !line.isBlank())
+                .map(line -> parse(line, type))
+                .buffer(INGEST_CHUNK)
+                .concatMap(chunk -> handleChunk(chunk, chunkHandler), 1)
+                .concatMapIterable(results -> results);
+    }
+
+    private <T> Line<T> parse(String line, Class<T> type) {
+        try {
+            return new Line<>(objectMapper.readValue(line, type), null);
+        } catch (JsonProcessingException e) {
+            return new Line<>(null, BatchResult.invalid("Некорректная строка NDJSON: " + e.getOriginalMessage()));
+        }
+    }
+
+    private static <T> Mono<List<BatchResult>> handleChunk(List<Line<T>> chunk,
+                                                           Function<List<T>, Mono<List<BatchResult>>> chunkHandler) {
+        List<T> values = chunk.stream().filter(line -> line.error() == null).map(Line::value).toList();
+        if (values.isEmpty())
+            return Mono.just(chunk.stream().map(Line::error).toList());
+        return chunkHandler.apply(values).map(handled -> {
+            List<BatchResult> results = new ArrayList<>(chunk.size());
+            int next = 0;
+            for (Line<T> line : chunk) {
+                results.add(line.error() == null ? handled.get(next++) : line.error());
+            }
+            return results;
+        });
+    }
+
+    // разобранная строка или ошибка разбора
+    private record Line<T>(T value, BatchResult error) {
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ReactiveFilmService;
+import ru.yandex.practicum.filmorate.service.ReactiveUserService;
+
+import java.util.List;
+
+// те же маршруты, что у UserController, на WebFlux
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/users")
+@RequiredArgsConstructor
+public class ReactiveUserController {
+    private final ReactiveUserService userService;
+    private final ReactiveFilmService filmService;
+    private final ReactiveNdjson ndjson;
+
+    @GetMapping
+    public Flux<User> findAll(@RequestParam(name = "after", required = false) Long after,
+                              @RequestParam(name = "limit", required = false) Integer limit) {
+        if (after == null && limit == null)
+            return userService.findAll();
+        return userService.findPage(after, limit);
+    }
+
+    @GetMapping(produces = NdjsonStreamer.NDJSON)
+    public Flux<User> export() {
+        return userService.streamAll();
+    }
+
+    @PostMapping
+    public Mono<User> create(@Valid @RequestBody User user) {
+        return userService.create(user);
+    }
+
+    @PostMapping("/batch")
+    public Mono<List<BatchResult>> createAll(@RequestBody List<User> users) {
+        return userService.createAll(users);
+    }
+
+    @PostMapping(path = "/batch", consumes = NdjsonStreamer.NDJSON)
+    public Flux<BatchResult> importAll(@RequestBody Flux<String> lines) {
+        return ndjson.ingest(lines, User.class, userService::createAll);
+    }
+
+    @PostMapping("/friends/batch")
+    public Mono<List<BatchResult>> addFriends(@RequestBody List<Friendship> friendships) {
+        return userService.addFriends(friendships);
+    }
+
+    @PostMapping(path = "/friends/batch", consumes = NdjsonStreamer.NDJSON)
+    public Flux<BatchResult> importFriends(@RequestBody Flux<String> lines) {
+        return ndjson.ingest(lines, Friendship.class, userService::addFriends);
+    }
+
+    @PutMapping
+    public Mono<User> update(@Valid @RequestBody User user) {
+        return userService.update(user);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<User>> findById(@PathVariable Long id, ServerWebExchange exchange) {
+        return userService.findById(id)
+                .flatMap(user -> ETags.conditional(exchange, ETags.user(user), () -> Mono.just(user)));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<Void> delete(@PathVariable Long id) {
+        return userService.delete(id);
+    }
+
+    @PutMapping("/{id}/friends/{friendId}")
+    public Mono<Void> addFriend(@PathVariable("id") Long userId,
+                                @PathVariable("friendId") Long friendId) {
+        return userService.addFriend(userId, friendId);
+    }
+
+    @DeleteMapping("/{id}/friends/{friendId}")
+    public Mono<Void> removeFriend(@PathVariable("id") Long userId,
+                                   @PathVariable("friendId") Long friendId) {
+        return userService.removeFriend(userId, friendId);
+    }
+
+    @GetMapping("/{id}/friends")
+    public Mono<ResponseEntity<List<User>>> getAllFriends(@PathVariable("id") Long userId,
+                                                          ServerWebExchange exchange) {
+        return userService.getAllFriends(userId).flatMap(friends ->
+                ETags.conditional(exchange, ETags.users("f" + userId, friends), () -> Mono.just(friends)));
+    }
+
+    @GetMapping("/{id}/friends/common/{otherId}")
+    public Mono<ResponseEntity<List<User>>> getCommonFriends(@PathVariable("id") Long userId,
+                                                             @PathVariable("otherId") Long otherId,
+                                                             ServerWebExchange exchange) {
+        return userService.getCommonFriends(userId, otherId).flatMap(common ->
+                ETags.conditional(exchange, ETags.users("c" + userId + "-" + otherId, common),
+                        () -> Mono.just(common)));
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public Flux<FriendRecommendation> getFriendRecommendations(@PathVariable("id") Long userId,
+                                                               @RequestParam(name = "limit", required = false)
+                                                               Integer limit) {
+        return userService.getFriendRecommendations(userId, limit);
+    }
+
+    @GetMapping("/{id}/likes")
+    public Flux<Film> getLikedFilms(@PathVariable("id") Long userId) {
+        return filmService.getLikedFilms(userId);
+    }
+
+    @GetMapping("/{id}/recommendations/films")
+    public Flux<Film> getFilmRecommendations(@PathVariable("id") Long userId,
+                                             @RequestParam(name = "limit", required = false) Integer limit) {
+        return filmService.getFilmRecommendations(userId, limit);
+    }
+
+    @GetMapping("/{id}/friends/common/{otherId}/count")
+    public Mono<Integer> countCommonFriends(@PathVariable("id") Long userId,
+                                            @PathVariable("otherId") Long otherId) {
+        return userService.countCommonFriends(userId, otherId);
+    }
+}
@@ -2,21 +2,46 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final NdjsonStreamer ndjsonStreamer;
 
+    // без параметров - весь список, с параметрами - страница по курсору: ?after=id&limit=n
     @GetMapping
-    public Collection<User> findAll() {
-        return userService.findAll();
+    public Collection<User> findAll(@RequestParam(name = "after", required = false) Long after,
+                                    @RequestParam(name = "limit", required = false) Integer limit) {
+        if (after == null && limit == null)
+            return userService.findAll();
+        return userService.findPage(after, limit);
+    }
+
+    // потоковая выгрузка всего списка при Accept: application/x-ndjson
+    @GetMapping(produces = NdjsonStreamer.NDJSON)
+    public StreamingResponseBody export() {
+        return ndjsonStreamer.stream(userService::findPage, User::getId);
     }
 
     @PostMapping
@@ -24,14 +49,38 @@ public class UserController {
         return userService.create(user);
     }
 
+    // пакетная загрузка: JSON-массив или NDJSON, по результату на каждый элемент в порядке запроса
+    @PostMapping("/batch")
+    public List<BatchResult> createAll(@RequestBody List<User> users) {
+        return userService.createAll(users);
+    }
+
+    @PostMapping(path = "/batch", consumes = NdjsonStreamer.NDJSON)
+    public List<BatchResult> importAll(InputStream body) throws IOException {
+        return ndjsonStreamer.ingest(body, User.class, userService::createAll);
+    }
+
+    // POST /users/friends/batch: [{"userId": 1, "friendId": 2}, ...]
+    @PostMapping("/friends/batch")
+    public List<BatchResult> addFriends(@RequestBody List<Friendship> friendships) {
+        return userService.addFriends(friendships);
+    }
+
+    @PostMapping(path = "/friends/batch", consumes = NdjsonStreamer.NDJSON)
+    public List<BatchResult> importFriends(InputStream body) throws IOException {
+        return ndjsonStreamer.ingest(body, Friendship.class, userService::addFriends);
+    }
+
     @PutMapping
     public User update(@Valid @RequestBody User user) {
         return userService.update(user);
     }
 
+    // ответы с ETag: при совпадении If-None-Match - 304 без тела
     @GetMapping("/{id}")
-    public User findById(@PathVariable Long id) {
-        return userService.findById(id);
+    public ResponseEntity<User> findById(@PathVariable Long id, WebRequest request) {
+        User user = userService.findById(id);
+        return ETags.conditional(request, ETags.user(user), () -> user);
     }
 
     @DeleteMapping("/{id}")
@@ -52,14 +101,42 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getAllFriends(@PathVariable("id") Long userId) {
-        return userService.getAllFriends(userId);
+    public ResponseEntity<List<User>> getAllFriends(@PathVariable("id") Long userId, WebRequest request) {
+        List<User> friends = userService.getAllFriends(userId);
+        return ETags.conditional(request, ETags.users("f" + userId, friends), () -> friends);
     }
 
     // GET /users
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriends(@PathVariable("id") Long userId,
-                                       @PathVariable("otherId") Long otherId) {
-        return userService.getCommonFriends(userId, otherId);
+    public ResponseEntity<List<User>> getCommonFriends(@PathVariable("id") Long userId,
+                                                       @PathVariable("otherId") Long otherId, WebRequest request) {
+        List<User> common = userService.getCommonFriends(userId, otherId);
+        return ETags.conditional(request, ETags.users("c" + userId + "-" + otherId, common), () -> common);
+    }
+
+    // люди, с которыми больше всего общих друзей: ?limit=n, по умолчанию 10
+    @GetMapping("/{id}/recommendations")
+    public List<FriendRecommendation> getFriendRecommendations(@PathVariable("id") Long userId,
+                                                               @RequestParam(name = "limit", required = false)
+                                                               Integer limit) {
+        return userService.getFriendRecommendations(userId, limit);
+    }
+
+    @GetMapping("/{id}/likes")
+    public List<Film> getLikedFilms(@PathVariable("id") Long userId) {
+        return filmService.getLikedFilms(userId);
+    }
+
+    // фильмы, которые нравятся пользователям с похожими лайками: ?limit=n, по умолчанию 10
+    @GetMapping("/{id}/recommendations/films")
+    public List<Film> getFilmRecommendations(@PathVariable("id") Long userId,
+                                             @RequestParam(name = "limit", required = false) Integer limit) {
+        return filmService.getFilmRecommendations(userId, limit);
+    }
+
+    @GetMapping("/{id}/friends/common/{otherId}/count")
+    public int countCommonFriends(@PathVariable("id") Long userId,
+                                  @PathVariable("otherId") Long otherId) {
+        return userService.countCommonFriends(userId, otherId);
     }
 }
@@ -1,11 +1,13 @@
 package ru.yandex.practicum.filmorate.exceptions;
 
+// без стека вызовов: промах по id - обычный ответ 404, а не сбой, и стек в нём не нужен.
+// экземпляр без сообщения неизменяем, его можно создать один раз и бросать повторно
 public class NotFoundException extends RuntimeException {
     public NotFoundException() {
-        super();
+        super(null, null, false, false);
     }
 
     public NotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -1,7 +1,8 @@
 package ru.yandex.practicum.filmorate.exceptions;
 
+// без стека вызовов, как NotFoundException: клиенту уходит только сообщение
 public class ValidationException extends RuntimeException {
     public ValidationException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -1,35 +1,77 @@
 package ru.yandex.practicum.filmorate.handlers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ServerWebInputException;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 
 @RestControllerAdvice
 @Slf4j
 public class ErrorHandler {
+    private final Counter notFoundErrors;
+    private final Counter validationErrors;
+    private final Counter internalErrors;
+    // ответ 404 одинаков для всех промахов: тело сериализуется один раз, ответ не меняется
+    private final ResponseEntity<byte[]> notFound;
+
+    public ErrorHandler(MeterRegistry meterRegistry, ObjectMapper objectMapper) throws JsonProcessingException {
+        notFoundErrors = errorCounter(meterRegistry, "not_found");
+        validationErrors = errorCounter(meterRegistry, "validation");
+        internalErrors = errorCounter(meterRegistry, "internal");
+        notFound = ResponseEntity.status(HttpStatus.NOT_FOUND) // 404
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(objectMapper.writeValueAsBytes(new ErrorResponse("Объект не найден")));
+    }
 
     @ExceptionHandler(NotFoundException.class)
-    @ResponseStatus(HttpStatus.NOT_FOUND) // 404
-    public ErrorResponse handleNotFound(NotFoundException e) {
-        return new ErrorResponse("Объект не найден");
+    public ResponseEntity<byte[]> handleNotFound(NotFoundException e) {
+        notFoundErrors.increment();
+        return notFound;
     }
 
     @ExceptionHandler(ValidationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST) // 400
     public ErrorResponse handleValidation(ValidationException e) {
+        validationErrors.increment();
         return new ErrorResponse(e.getMessage());
     }
 
+    // Jackson оборачивает исключения из модели при чтении тела (например, null в списке id):
+    // проверка модели - 400, остальные ошибки чтения - как прежде
+    @ExceptionHandler({HttpMessageNotReadableException.class, ServerWebInputException.class})
+    public ResponseEntity<ErrorResponse> handleUnreadable(Exception e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ValidationException validation)
+                return ResponseEntity.badRequest().body(handleValidation(validation));
+        }
+        return ResponseEntity.internalServerError().body(handleThrowable(e));
+    }
+
     // Самый общий обработчик - ПОСЛЕДНИМ
     @ExceptionHandler(Throwable.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR) // 500
     public ErrorResponse handleThrowable(Throwable e) {
+        internalErrors.increment();
         log.error("Внутренняя ошибка:", e);
         return new ErrorResponse("Внутренняя ошибка");
     }
+
+    private static Counter errorCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("filmorate.errors")
+                .description("Ошибки, возвращённые клиенту")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
 }
 
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// ответ на один элемент пакетного запроса; результаты идут в том же порядке, что и элементы запроса.
+// id - у созданных объектов, error - у отклонённых элементов
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResult(BatchStatus status, Long id, String error) {
+    private static final BatchResult UNCHANGED = new BatchResult(BatchStatus.UNCHANGED, null, null);
+    private static final BatchResult OK = new BatchResult(BatchStatus.OK, null, null);
+
+    public static BatchResult ok() {
+        return OK;
+    }
+
+    public static BatchResult created(Long id) {
+        return new BatchResult(BatchStatus.OK, id, null);
+    }
+
+    public static BatchResult unchanged() {
+        return UNCHANGED;
+    }
+
+    public static BatchResult notFound(String error) {
+        return new BatchResult(BatchStatus.NOT_FOUND, null, error);
+    }
+
+    public static BatchResult invalid(String error) {
+        return new BatchResult(BatchStatus.INVALID, null, error);
+    }
+
+    public static BatchResult of(BatchStatus status) {
+        return switch (status) {
+            case OK -> OK;
+            case UNCHANGED -> UNCHANGED;
+            default -> new BatchResult(status, null, null);
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.model;
+
+// результат одного элемента пакетной операции
+public enum BatchStatus {
+    // элемент создан или связь добавлена
+    OK,
+    // связь уже была, ничего не изменилось
+    UNCHANGED,
+    NOT_FOUND,
+    INVALID
+}
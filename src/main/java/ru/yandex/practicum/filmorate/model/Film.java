@@ -1,10 +1,9 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 public class Film {
@@ -13,5 +12,9 @@ public class Film {
     private String description;
     private LocalDate releaseDate;
     private Integer duration;
-    private Set<Long> likes = new HashSet<>();
+    private IdSet likes = new IdSet();
+    // растёт хранилищем при каждом изменении, в том числе лайков; из него строится ETag.
+    // клиент его не задаёт
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private volatile long version;
 }
@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.model;
+
+// рекомендация в друзья: пользователь и число общих с ним друзей
+public record FriendRecommendation(User user, int mutualFriends) {
+}
@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.model;
+
+// дружба в пакетной загрузке: пользователь userId добавляет в друзья friendId
+public record Friendship(Long userId, Long friendId) {
+}
@@ -0,0 +1,261 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// компактное множество id для лайков и друзей: отсортированный массив long вместо HashSet<Long>.
+// на одну связь уходит 8 байт вместо объекта Long и узла HashMap (~48+ байт).
+// массив не меняется после публикации: изменение создаёт новую копию и подменяет её атомарно,
+// поэтому чтение (в том числе сериализация) идёт без блокировок по целостному снимку,
+// а цена изменения - O(размер множества)
+public class IdSet extends AbstractSet<Long> {
+    private static final long[] EMPTY = new long[0];
+    // если одно множество больше другого во столько раз, вместо слияния ищем галопом
+    private static final int GALLOP_RATIO = 16;
+    private static final VarHandle IDS;
+
+    static {
+        try {
+            IDS = MethodHandles.lookup().findVarHandle(IdSet.class, "ids", long[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long[] ids = EMPTY;
+
+    public IdSet() {
+    }
+
+    public IdSet(Collection<Long> source) {
+        long[] copy = new long[source.size()];
+        int size = 0;
+        for (Long id : source) {
+            copy[size++] = requireId(id);
+        }
+        ids = sortedUnique(copy, size);
+    }
+
+    // массив переходит во владение множества: он сортируется на месте и дальше не должен меняться снаружи
+    public IdSet(long[] source) {
+        ids = sortedUnique(source, source.length);
+    }
+
+    // null приходит из JSON вида "likes":[null]: это ошибка запроса, а не сервера
+    private static long requireId(Long id) {
+        if (id == null)
+            throw new ValidationException("id в списке не может быть null");
+        return id;
+    }
+
+    private static long[] sortedUnique(long[] source, int size) {
+        Arrays.sort(source, 0, size);
+        // убираем повторы, если источник не был множеством
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || source[unique - 1] != source[i])
+                source[unique++] = source[i];
+        }
+        return unique == source.length ? source : Arrays.copyOf(source, unique);
+    }
+
+    // независимое множество с тем же содержимым за O(1): массив не меняется, поэтому его можно разделить,
+    // а изменения каждого из множеств дальше подменяют только свой массив
+    public IdSet copy() {
+        IdSet copy = new IdSet();
+        copy.ids = ids;
+        return copy;
+    }
+
+    // текущий снимок в порядке возрастания; массив общий, изменять его нельзя
+    public long[] snapshot() {
+        return ids;
+    }
+
+    // пересечение двух отсортированных массивов без промежуточных коллекций
+    public static long[] intersect(long[] first, long[] second) {
+        long[] small = first.length <= second.length ? first : second;
+        long[] large = small == first ? second : first;
+        long[] result = new long[small.length];
+        int size = intersect(small, large, result);
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    // только размер пересечения, без выделения памяти под результат
+    public static int intersectionSize(long[] first, long[] second) {
+        long[] small = first.length <= second.length ? first : second;
+        long[] large = small == first ? second : first;
+        return intersect(small, large, null);
+    }
+
+    private static int intersect(long[] small, long[] large, long[] result) {
+        if (small.length == 0)
+            return 0;
+        if ((long) small.length * GALLOP_RATIO < large.length)
+            return gallop(small, large, result);
+        return merge(small, large, result);
+    }
+
+    // линейное слияние, O(|small| + |large|)
+    private static int merge(long[] small, long[] large, long[] result) {
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < small.length && j < large.length) {
+            if (small[i] < large[j]) {
+                i++;
+            } else if (small[i] > large[j]) {
+                j++;
+            } else {
+                if (result != null)
+                    result[size] = small[i];
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    // для каждого элемента маленького массива шагаем по большому с удвоением шага,
+    // затем бинарный поиск в найденном отрезке: O(|small| * log(|large| / |small|))
+    private static int gallop(long[] small, long[] large, long[] result) {
+        int size = 0;
+        int from = 0;
+        for (long id : small) {
+            int step = 1;
+            int high = from;
+            // всё левее from меньше id
+            while (high < large.length && large[high] < id) {
+                from = high + 1;
+                high = from + step - 1;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(large, from, Math.min(high + 1, large.length), id);
+            if (index >= 0) {
+                if (result != null)
+                    result[size] = id;
+                size++;
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+            if (from >= large.length)
+                break;
+        }
+        return size;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long id && Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    @Override
+    public boolean add(Long id) {
+        requireId(id);
+        while (true) {
+            long[] current = ids;
+            int index = Arrays.binarySearch(current, id);
+            if (index >= 0)
+                return false;
+            int position = -index - 1;
+            long[] updated = new long[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, position);
+            updated[position] = id;
+            System.arraycopy(current, position, updated, position + 1, current.length - position);
+            if (IDS.compareAndSet(this, current, updated))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Long id))
+            return false;
+        while (true) {
+            long[] current = ids;
+            int index = Arrays.binarySearch(current, id);
+            if (index < 0)
+                return false;
+            long[] updated = current.length == 1 ? EMPTY : new long[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            if (IDS.compareAndSet(this, current, updated))
+                return true;
+        }
+    }
+
+    // добавление многих id одной копией массива вместо копии на каждый id;
+    // массив сортируется на месте. результат - сколько id действительно добавлено
+    public int addAll(long[] source) {
+        long[] added = sortedUnique(source, source.length);
+        if (added.length == 0)
+            return 0;
+        while (true) {
+            long[] current = ids;
+            long[] merged = new long[current.length + added.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < current.length || j < added.length) {
+                if (j == added.length || (i < current.length && current[i] < added[j])) {
+                    merged[size++] = current[i++];
+                } else if (i == current.length || added[j] < current[i]) {
+                    merged[size++] = added[j++];
+                } else {
+                    merged[size++] = current[i++];
+                    j++;
+                }
+            }
+            if (size == current.length)
+                return 0;
+            if (IDS.compareAndSet(this, current, size == merged.length ? merged : Arrays.copyOf(merged, size)))
+                return size - current.length;
+        }
+    }
+
+    @Override
+    public void clear() {
+        ids = EMPTY;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        long[] current = ids;
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < current.length;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= current.length)
+                    throw new NoSuchElementException();
+                return current[next++];
+            }
+
+            @Override
+            public void remove() {
+                if (next == 0)
+                    throw new IllegalStateException();
+                IdSet.this.remove(current[next - 1]);
+            }
+        };
+    }
+}
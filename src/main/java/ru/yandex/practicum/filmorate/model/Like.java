@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.model;
+
+// лайк в пакетной загрузке: пользователь userId ставит лайк фильму filmId
+public record Like(Long filmId, Long userId) {
+}
@@ -1,10 +1,9 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 public class User {
@@ -13,5 +12,9 @@ public class User {
     private String login;
     private String name;
     private LocalDate birthday;
-    private Set<Long> friends = new HashSet<>();
+    private IdSet friends = new IdSet();
+    // растёт хранилищем при каждом изменении, в том числе списка друзей; из него строится ETag.
+    // клиент его не задаёт
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private volatile long version;
 }
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+// элементы пакетного запроса: отклонённые при проверке сразу получают результат,
+// принятые уходят в хранилище одним вызовом, и его ответы раскладываются по исходным позициям
+class Batch<T> {
+    private final BatchResult[] results;
+    private final List<T> accepted = new ArrayList<>();
+    private final List<Integer> positions = new ArrayList<>();
+
+    Batch(int size) {
+        results = new BatchResult[size];
+    }
+
+    void accept(int position, T item) {
+        accepted.add(item);
+        positions.add(position);
+    }
+
+    void reject(int position, BatchResult result) {
+        results[position] = result;
+    }
+
+    List<T> accepted() {
+        return accepted;
+    }
+
+    // outcomes - ответы хранилища в порядке accepted()
+    <R> List<BatchResult> complete(List<R> outcomes, BiFunction<T, R, BatchResult> toResult) {
+        for (int k = 0; k < accepted.size(); k++) {
+            results[positions.get(k)] = toResult.apply(accepted.get(k), outcomes.get(k));
+        }
+        return Arrays.asList(results);
+    }
+
+    static long count(List<BatchResult> results, BatchStatus status) {
+        return results.stream().filter(result -> result.status() == status).count();
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// рекомендации фильмов по пользователям с похожими лайками.
+// кандидаты в соседи - лайкнувшие те же фильмы; у популярных фильмов берётся равномерная выборка,
+// а если фильмов больше TWO_HOP_BUDGET / MIN_PER_FILM, то и из самих фильмов, - обход не превышает
+// TWO_HOP_BUDGET. точное число общих лайков с каждым кандидатом считается пересечением отсортированных
+// массивов параллельно в ForkJoinPool, затем NEIGHBOURS самых похожих голосуют за свои фильмы
+// весом, равным числу общих лайков
+final class CollaborativeFiltering {
+    private static final long[] EMPTY = new long[0];
+    private static final int TWO_HOP_BUDGET = 200_000;
+    private static final int MIN_PER_FILM = 20;
+    private static final int MAX_CANDIDATES = 2_000;
+    private static final int NEIGHBOURS = 50;
+    // часть задачи меньше этого считается в текущем потоке без деления
+    private static final int PARALLEL_THRESHOLD = 512;
+
+    private CollaborativeFiltering() {
+    }
+
+    // likedFilms - фильмы, которые лайкнул пользователь
+    static long[] candidates(long userId, List<Film> likedFilms) {
+        if (likedFilms.isEmpty())
+            return EMPTY;
+        int sampled = Math.min(likedFilms.size(), TWO_HOP_BUDGET / MIN_PER_FILM);
+        // не меньше MIN_PER_FILM: фильмов в выборке не больше TWO_HOP_BUDGET / MIN_PER_FILM
+        int perFilm = TWO_HOP_BUDGET / sampled;
+        long[][] lists = new long[sampled][];
+        int total = 0;
+        for (int f = 0; f < lists.length; f++) {
+            lists[f] = likedFilms.get((int) ((long) f * likedFilms.size() / sampled)).getLikes().snapshot();
+            total += Math.min(lists[f].length, perFilm);
+        }
+        IdCounter counter = new IdCounter(total);
+        for (long[] ids : lists) {
+            int taken = Math.min(ids.length, perFilm);
+            for (int k = 0; k < taken; k++) {
+                long id = ids[(int) ((long) k * ids.length / taken)];
+                if (id != userId)
+                    counter.add(id, 1);
+            }
+        }
+        return counter.top(MAX_CANDIDATES);
+    }
+
+    // liked - отсортированные id фильмов пользователя, likesOf - лайки кандидатов
+    static Neighbours neighbours(long[] liked, long[] candidates, Map<Long, long[]> likesOf) {
+        long[][] lists = new long[candidates.length][];
+        for (int i = 0; i < candidates.length; i++) {
+            lists[i] = likesOf.getOrDefault(candidates[i], EMPTY);
+        }
+        int[] overlaps = new int[candidates.length];
+        ForkJoinPool.commonPool().invoke(new OverlapTask(liked, lists, overlaps, 0, candidates.length));
+        int[] top = IdCounter.top(candidates, overlaps, NEIGHBOURS);
+        // кандидат мог снять лайки после того, как попал в выборку
+        int size = 0;
+        while (size < top.length && overlaps[top[size]] > 0) {
+            size++;
+        }
+        long[] ids = new long[size];
+        int[] weights = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = candidates[top[i]];
+            weights[i] = overlaps[top[i]];
+        }
+        return new Neighbours(ids, weights);
+    }
+
+    // фильмы соседей, которых пользователь ещё не лайкал, по сумме весов соседей
+    static long[] films(long[] liked, Neighbours neighbours, Map<Long, long[]> likesOf, int limit) {
+        long[][] lists = new long[neighbours.ids().length][];
+        int total = 0;
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = likesOf.getOrDefault(neighbours.ids()[i], EMPTY);
+            total += lists[i].length;
+        }
+        IdCounter counter = new IdCounter(total);
+        for (int i = 0; i < lists.length; i++) {
+            for (long filmId : lists[i]) {
+                if (Arrays.binarySearch(liked, filmId) < 0)
+                    counter.add(filmId, neighbours.weights()[i]);
+            }
+        }
+        return counter.top(limit);
+    }
+
+    // самые похожие пользователи по убыванию числа общих лайков
+    record Neighbours(long[] ids, int[] weights) {
+    }
+
+    // делит кандидатов пополам, пока часть не станет меньше порога
+    private static final class OverlapTask extends RecursiveAction {
+        private final long[] liked;
+        private final long[][] lists;
+        private final int[] overlaps;
+        private final int from;
+        private final int to;
+
+        OverlapTask(long[] liked, long[][] lists, int[] overlaps, int from, int to) {
+            this.liked = liked;
+            this.lists = lists;
+            this.overlaps = overlaps;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    overlaps[i] = IdSet.intersectionSize(liked, lists[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new OverlapTask(liked, lists, overlaps, from, middle),
+                    new OverlapTask(liked, lists, overlaps, middle, to));
+        }
+    }
+}
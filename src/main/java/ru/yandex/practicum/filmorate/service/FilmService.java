@@ -1,36 +1,62 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.StorageValidator;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.LongStream;
 
 @Service
+// время каждого метода с гистограммой: filmorate_service_seconds{class, method}
+@Timed(value = "filmorate.service", histogram = true)
 @RequiredArgsConstructor
 @Slf4j
 public class FilmService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int DEFAULT_RECOMMENDATIONS = 10;
+    private static final int MAX_RECOMMENDATIONS = 100;
+    // промах по id встречается часто (перебор id клиентом), исключение создаётся один раз
+    private static final NotFoundException NOT_FOUND = new NotFoundException();
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final ReadCache readCache;
     // каждый пользователь может поставить лайк фильму только один раз
     // реализуется благодаря тому что лайки хранятся в множестве Set
 
     public Collection<Film> findAll() {
         Collection<Film> films = filmStorage.findAll();
-        log.debug("Найден список фильмов: {}", films);
-        log.info("Всего фильмов: {}", films.size());
+        log.debug("Всего фильмов: {}", films.size());
         return films;
     }
 
+    // GET /films?after={id}&limit={limit}
+    public List<Film> findPage(Long after, Integer limit) {
+        return filmStorage.findPage(validateAfter(after), validateLimit(limit));
+    }
+
     public Film create(Film film) {
         Film createFilm = filmStorage.create(film);
+        readCache.filmsCreated();
         log.info("Создан фильм: {}", createFilm.getId());
         return createFilm;
     }
@@ -49,6 +75,7 @@ public class FilmService {
         }
 
         Film updateFilm = filmStorage.update(film);
+        readCache.filmChanged(updateFilm.getId());
         log.info("Обновлен фильм: {}", updateFilm.getId());
         return updateFilm;
     }
@@ -56,7 +83,7 @@ public class FilmService {
 
     public Film findById(Long id) {
         validateId(id);
-        Film findFilmById = filmStorage.findById(id).orElseThrow(() -> notFoundFilm(id));
+        Film findFilmById = readCache.film(id, () -> filmStorage.findById(id).orElseThrow(() -> notFoundFilm(id)));
         log.debug("Найден фильм: {}", findFilmById);
         return findFilmById;
     }
@@ -64,6 +91,7 @@ public class FilmService {
     public void delete(Long id) {
         validateId(id);
         filmStorage.delete(id);
+        readCache.filmChanged(id);
         log.info("Фильм успешно удален");
     }
 
@@ -71,47 +99,181 @@ public class FilmService {
     public void addLike(Long filmId, Long userId) {
         validateId(filmId);
         validateId(userId);
-        Film film = filmStorage.findById(filmId).orElseThrow(() -> notFoundFilm(filmId));
         userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
-        film.getLikes().add(userId);
-        log.info("Пользователь {} поставил лайк фильму {}", userId, filmId);
-        // когда меняем состояние фильма (добавляем лайк),
-        // это считается модификацией объекта,
-        // и корректно зафиксировать её через метод модификации хранилища —
-        filmStorage.update(film);
+        if (filmStorage.addLike(filmId, userId)) {
+            readCache.likeAdded(filmId, () -> filmStorage.countLikes(filmId));
+            readCache.likesChanged(userId);
+            log.debug("Пользователь {} поставил лайк фильму {}", userId, filmId);
+        } else {
+            log.debug("Пользователь {} уже ставил лайк фильму {}", userId, filmId);
+        }
     }
 
     public void removeLike(Long filmId, Long userId) {
         validateId(filmId);
         validateId(userId);
-        Film film = filmStorage.findById(filmId).orElseThrow(() -> notFoundFilm(filmId));
         userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
-        film.getLikes().remove(userId);
-        log.info("Пользователь {} удалил лайк у фильма {}", userId, filmId);
-        filmStorage.update(film);
+        if (filmStorage.removeLike(filmId, userId)) {
+            readCache.filmChanged(filmId);
+            readCache.likesChanged(userId);
+            log.debug("Пользователь {} удалил лайк у фильма {}", userId, filmId);
+        } else {
+            log.debug("У фильма {} нет лайка пользователя {}", filmId, userId);
+        }
+    }
+
+    // POST /films/batch
+    // все фильмы проверяются заранее, некорректные отклоняются, остальные создаются одной пачкой
+    public List<BatchResult> createAll(List<Film> films) {
+        validateBatchSize(films.size());
+        Batch<Film> batch = new Batch<>(films.size());
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            if (film == null) {
+                batch.reject(i, BatchResult.invalid("Пустой элемент"));
+                continue;
+            }
+            try {
+                StorageValidator.validateFilm(film);
+                batch.accept(i, film);
+            } catch (ValidationException e) {
+                batch.reject(i, BatchResult.invalid(e.getMessage()));
+            }
+        }
+        List<BatchResult> results = batch.complete(filmStorage.createAll(batch.accepted()),
+                (film, created) -> BatchResult.created(created.getId()));
+        if (!batch.accepted().isEmpty())
+            readCache.filmsCreated();
+        log.info("Пакетная загрузка фильмов: создано {} из {}", batch.accepted().size(), films.size());
+        return results;
+    }
+
+    // POST /films/likes/batch
+    // пользователи всей пачки проверяются одним запросом к хранилищу
+    public List<BatchResult> addLikes(List<Like> likes) {
+        validateBatchSize(likes.size());
+        Set<Long> users = userStorage.findExistingIds(likes.stream()
+                .filter(Objects::nonNull)
+                .map(Like::userId)
+                .filter(Objects::nonNull)
+                .toList());
+        Batch<Like> batch = new Batch<>(likes.size());
+        for (int i = 0; i < likes.size(); i++) {
+            Like like = likes.get(i);
+            if (like == null || !isValidId(like.filmId()) || !isValidId(like.userId())) {
+                batch.reject(i, BatchResult.invalid("id должен быть > 0"));
+            } else if (!users.contains(like.userId())) {
+                batch.reject(i, BatchResult.notFound("Пользователь с id=" + like.userId() + " не найден"));
+            } else {
+                batch.accept(i, like);
+            }
+        }
+        List<BatchResult> results = batch.complete(filmStorage.addLikes(batch.accepted()),
+                (like, status) -> status == BatchStatus.NOT_FOUND
+                        ? BatchResult.notFound("Фильм с id=" + like.filmId() + " не найден")
+                        : BatchResult.of(status));
+        Set<Long> changed = new HashSet<>();
+        Set<Long> likers = new HashSet<>();
+        for (int i = 0; i < likes.size(); i++) {
+            if (results.get(i).status() == BatchStatus.OK) {
+                changed.add(likes.get(i).filmId());
+                likers.add(likes.get(i).userId());
+            }
+        }
+        if (!changed.isEmpty()) {
+            readCache.filmsChanged(changed);
+            readCache.likesChanged(likers.stream().mapToLong(Long::longValue).toArray());
+        }
+        log.info("Пакетная загрузка лайков: добавлено {} из {}", Batch.count(results, BatchStatus.OK), likes.size());
+        return results;
     }
 
     // GET /films/popular?count={count}
     public List<Film> getPopular(int size) {
         if (size <= 0) throw new ValidationException("count должен быть > 0");
-        return filmStorage.findAll().stream()
-                .sorted(Comparator.comparingInt(
-                        (Film film) -> film.getLikes().size()).reversed())
-                .limit(size).toList();
+        return readCache.popular(size, () -> filmStorage.getPopular(size));
+    }
+
+    // GET /users/{id}/likes
+    // фильмы, которые лайкнул пользователь, по возрастанию id - из обратного индекса лайков
+    public List<Film> getLikedFilms(Long userId) {
+        validateId(userId);
+        userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
+        return filmStorage.findAllByIds(boxed(filmStorage.findLikedFilmIds(userId)));
+    }
+
+    // GET /users/{id}/recommendations/films?limit={limit}
+    // фильмы, которые нравятся пользователям с самыми похожими лайками. ответ кэшируется и сбрасывается,
+    // когда меняются лайки пользователя или его соседей, лайкнутые им или рекомендованные фильмы
+    public List<Film> getFilmRecommendations(Long userId, Integer limit) {
+        validateId(userId);
+        int count = validateRecommendationsLimit(limit);
+        return readCache.filmRecommendations(userId, count, () -> {
+            userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
+            long[] liked = filmStorage.findLikedFilmIds(userId);
+            long[] candidates = CollaborativeFiltering.candidates(userId, filmStorage.findAllByIds(boxed(liked)));
+            Map<Long, long[]> likesOf = filmStorage.findLikedFilmIds(boxed(candidates));
+            CollaborativeFiltering.Neighbours neighbours = CollaborativeFiltering.neighbours(liked, candidates,
+                    likesOf);
+            List<Film> films = filmStorage.findAllByIds(boxed(CollaborativeFiltering.films(liked, neighbours,
+                    likesOf, count)));
+            long[] filmDependencies = LongStream.concat(Arrays.stream(liked), films.stream().mapToLong(Film::getId))
+                    .toArray();
+            long[] likers = LongStream.concat(LongStream.of(userId), Arrays.stream(neighbours.ids())).toArray();
+            return new ReadCache.Tracked<>(films, filmDependencies, null, likers);
+        });
+    }
+
+    private static List<Long> boxed(long[] ids) {
+        return Arrays.stream(ids).boxed().toList();
     }
 
     private NotFoundException notFoundFilm(Long filmId) {
-        log.warn("Фильм не найден с id: {}", filmId);
-        return new NotFoundException();
+        log.debug("Фильм не найден с id: {}", filmId);
+        return NOT_FOUND;
     }
 
     private NotFoundException notFoundUser(Long userId) {
-        log.warn("Пользователь не найден с id: {}", userId);
-        return new NotFoundException();
+        log.debug("Пользователь не найден с id: {}", userId);
+        return NOT_FOUND;
+    }
+
+    private long validateAfter(Long after) {
+        if (after == null)
+            return 0;
+        if (after < 0)
+            throw new ValidationException("after должен быть >= 0");
+        return after;
+    }
+
+    private int validateLimit(Integer limit) {
+        if (limit == null)
+            return DEFAULT_PAGE_SIZE;
+        if (limit <= 0 || limit > MAX_PAGE_SIZE)
+            throw new ValidationException("limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        return limit;
+    }
+
+    private int validateRecommendationsLimit(Integer limit) {
+        if (limit == null)
+            return DEFAULT_RECOMMENDATIONS;
+        if (limit <= 0 || limit > MAX_RECOMMENDATIONS)
+            throw new ValidationException("limit должен быть от 1 до " + MAX_RECOMMENDATIONS);
+        return limit;
+    }
+
+    private void validateBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE)
+            throw new ValidationException("В одном запросе не больше " + MAX_BATCH_SIZE
+                    + " элементов, большие объёмы передаются в формате NDJSON");
+    }
+
+    private boolean isValidId(Long id) {
+        return id != null && id > 0;
     }
 
     private void validateId(Long id) {
-        if (id == null || id <= 0) {
+        if (!isValidId(id)) {
             log.warn("Некорректный id: {}", id);
             throw new ValidationException("id должен быть > 0");
         }
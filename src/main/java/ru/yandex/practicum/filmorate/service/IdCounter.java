@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.PriorityQueue;
+
+// счётчик id -> число на примитивах с открытой адресацией; id > 0, поэтому 0 - пустая ячейка.
+// различных ключей не больше числа добавлений, так что таблица заполнена не больше чем наполовину
+final class IdCounter {
+    private final long[] keys;
+    private final int[] counts;
+
+    IdCounter(int additions) {
+        int capacity = Integer.highestOneBit(Math.max(8, additions)) << 2;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    void add(long key, int delta) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        counts[i] += delta;
+    }
+
+    // первые k id по убыванию счёта
+    long[] top(int k) {
+        int[] positions = top(keys, counts, k);
+        long[] result = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = keys[positions[i]];
+        }
+        return result;
+    }
+
+    // позиции первых k элементов: больше счёт - выше, при равенстве - меньший id; id 0 пропускается.
+    // в куче худший элемент на вершине и вытесняется лучшим: O(n log k) без сортировки всех элементов
+    static int[] top(long[] ids, int[] counts, int k) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, (a, b) -> better(ids, counts, b, a) ? -1 : 1);
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == 0)
+                continue;
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (better(ids, counts, i, heap.peek())) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll();
+        }
+        return result;
+    }
+
+    // сравнение на примитивах: большинство элементов отсекается по счёту без обращения к куче
+    private static boolean better(long[] ids, int[] counts, int a, int b) {
+        return counts[a] > counts[b] || counts[a] == counts[b] && ids[a] < ids[b];
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Arrays;
+import java.util.List;
+
+// кандидаты в друзья по числу общих друзей: обход друзей друзей со счётчиком на примитивах
+// и отбор первых K кучей ограниченного размера, без сортировки всех кандидатов.
+// у друзей-«хабов» с огромными списками берётся равномерная выборка, а если друзей больше
+// TWO_HOP_BUDGET / MIN_PER_FRIEND, то и из самих друзей, - общий объём обхода не превышает TWO_HOP_BUDGET.
+// счёт по выборке только отбирает кандидатов, точное число общих друзей для них сервис считает
+// пересечением списков
+final class MutualFriends {
+    private static final int TWO_HOP_BUDGET = 200_000;
+    private static final int MIN_PER_FRIEND = 20;
+    // кандидатов отбирается с запасом: выборка у хабов может переставить соседние места
+    private static final int OVERSAMPLING = 2;
+
+    private MutualFriends() {
+    }
+
+    // friends - отсортированные id друзей пользователя, friendUsers - сами друзья
+    static long[] candidates(long userId, long[] friends, List<User> friendUsers, int limit) {
+        if (friendUsers.isEmpty())
+            return new long[0];
+        int sampled = Math.min(friendUsers.size(), TWO_HOP_BUDGET / MIN_PER_FRIEND);
+        // не меньше MIN_PER_FRIEND: друзей в выборке не больше TWO_HOP_BUDGET / MIN_PER_FRIEND
+        int perFriend = TWO_HOP_BUDGET / sampled;
+        long[][] lists = new long[sampled][];
+        int total = 0;
+        for (int f = 0; f < lists.length; f++) {
+            lists[f] = friendUsers.get((int) ((long) f * friendUsers.size() / sampled)).getFriends().snapshot();
+            total += Math.min(lists[f].length, perFriend);
+        }
+        IdCounter counter = new IdCounter(total);
+        for (long[] ids : lists) {
+            int taken = Math.min(ids.length, perFriend);
+            for (int k = 0; k < taken; k++) {
+                long id = ids[(int) ((long) k * ids.length / taken)];
+                if (id != userId && Arrays.binarySearch(friends, id) < 0)
+                    counter.add(id, 1);
+            }
+        }
+        return counter.top(limit * OVERSAMPLING);
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// синхронные вызовы сервисов в виде Mono/Flux: вызов выполняется при подписке в заданном планировщике
+final class ReactiveCalls {
+    private static final int PAGE_SIZE = 500;
+
+    private ReactiveCalls() {
+    }
+
+    static <T> Mono<T> one(Scheduler scheduler, Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(scheduler);
+    }
+
+    static <T> Flux<T> many(Scheduler scheduler, Callable<? extends Collection<T>> call) {
+        return one(scheduler, call).flatMapIterable(items -> items);
+    }
+
+    static Mono<Void> run(Scheduler scheduler, Runnable call) {
+        return Mono.<Void>fromRunnable(call).subscribeOn(scheduler);
+    }
+
+    // весь список страницами по курсору с учётом обратного давления:
+    // следующая страница читается, только когда подписчик запросил данные, в памяти - не больше страницы
+    static <T> Flux<T> pages(Scheduler scheduler, BiFunction<Long, Integer, List<T>> pageLoader,
+                             Function<T, Long> idOf) {
+        return Flux.<List<T>, Long>generate(() -> 0L, (after, sink) -> {
+                    List<T> page = pageLoader.apply(after, PAGE_SIZE);
+                    if (page.isEmpty()) {
+                        sink.complete();
+                        return after;
+                    }
+                    sink.next(page);
+                    return idOf.apply(page.getLast());
+                })
+                .subscribeOn(scheduler)
+                .concatMapIterable(page -> page, 1);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.util.List;
+
+// FilmService для WebFlux: те же проверки, кэш и метрики, результат - Mono/Flux
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveFilmService {
+    private final FilmService filmService;
+    private final Scheduler storageScheduler;
+    private final Scheduler bulkScheduler;
+
+    public Flux<Film> findAll() {
+        return ReactiveCalls.many(bulkScheduler, filmService::findAll);
+    }
+
+    public Flux<Film> findPage(Long after, Integer limit) {
+        return ReactiveCalls.many(storageScheduler, () -> filmService.findPage(after, limit));
+    }
+
+    public Flux<Film> streamAll() {
+        return ReactiveCalls.pages(bulkScheduler, filmService::findPage, Film::getId);
+    }
+
+    public Mono<Film> create(Film film) {
+        return ReactiveCalls.one(storageScheduler, () -> filmService.create(film));
+    }
+
+    public Mono<List<BatchResult>> createAll(List<Film> films) {
+        return ReactiveCalls.one(bulkScheduler, () -> filmService.createAll(films));
+    }
+
+    public Mono<Film> update(Film film) {
+        return ReactiveCalls.one(storageScheduler, () -> filmService.update(film));
+    }
+
+    public Mono<Film> findById(Long id) {
+        return ReactiveCalls.one(storageScheduler, () -> filmService.findById(id));
+    }
+
+    public Mono<Void> addLike(Long filmId, Long userId) {
+        return ReactiveCalls.run(storageScheduler, () -> filmService.addLike(filmId, userId));
+    }
+
+    public Mono<Void> removeLike(Long filmId, Long userId) {
+        return ReactiveCalls.run(storageScheduler, () -> filmService.removeLike(filmId, userId));
+    }
+
+    public Mono<List<BatchResult>> addLikes(List<Like> likes) {
+        return ReactiveCalls.one(bulkScheduler, () -> filmService.addLikes(likes));
+    }
+
+    public Mono<List<Film>> getPopular(int size) {
+        return ReactiveCalls.one(storageScheduler, () -> filmService.getPopular(size));
+    }
+
+    public Flux<Film> getLikedFilms(Long userId) {
+        return ReactiveCalls.many(storageScheduler, () -> filmService.getLikedFilms(userId));
+    }
+
+    public Flux<Film> getFilmRecommendations(Long userId, Integer limit) {
+        return ReactiveCalls.many(bulkScheduler, () -> filmService.getFilmRecommendations(userId, limit));
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+
+// UserService для WebFlux: те же проверки, кэш и метрики, результат - Mono/Flux
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveUserService {
+    private final UserService userService;
+    private final Scheduler storageScheduler;
+    private final Scheduler bulkScheduler;
+
+    public Flux<User> findAll() {
+        return ReactiveCalls.many(bulkScheduler, userService::findAll);
+    }
+
+    public Flux<User> findPage(Long after, Integer limit) {
+        return ReactiveCalls.many(storageScheduler, () -> userService.findPage(after, limit));
+    }
+
+    public Flux<User> streamAll() {
+        return ReactiveCalls.pages(bulkScheduler, userService::findPage, User::getId);
+    }
+
+    public Mono<User> create(User user) {
+        return ReactiveCalls.one(storageScheduler, () -> userService.create(user));
+    }
+
+    public Mono<List<BatchResult>> createAll(List<User> users) {
+        return ReactiveCalls.one(bulkScheduler, () -> userService.createAll(users));
+    }
+
+    public Mono<User> update(User user) {
+        return ReactiveCalls.one(storageScheduler, () -> userService.update(user));
+    }
+
+    public Mono<User> findById(Long id) {
+        return ReactiveCalls.one(storageScheduler, () -> userService.findById(id));
+    }
+
+    public Mono<Void> delete(Long id) {
+        return ReactiveCalls.run(storageScheduler, () -> userService.delete(id));
+    }
+
+    public Mono<Void> addFriend(Long userId, Long friendId) {
+        return ReactiveCalls.run(storageScheduler, () -> userService.addFriend(userId, friendId));
+    }
+
+    public Mono<Void> removeFriend(Long userId, Long friendId) {
+        return ReactiveCalls.run(storageScheduler, () -> userService.removeFriend(userId, friendId));
+    }
+
+    public Mono<List<BatchResult>> addFriends(List<Friendship> friendships) {
+        return ReactiveCalls.one(bulkScheduler, () -> userService.addFriends(friendships));
+    }
+
+    public Mono<List<User>> getAllFriends(Long userId) {
+        return ReactiveCalls.one(storageScheduler, () -> userService.getAllFriends(userId));
+    }
+
+    public Mono<List<User>> getCommonFriends(Long userId, Long otherId) {
+        return ReactiveCalls.one(storageScheduler, () -> userService.getCommonFriends(userId, otherId));
+    }
+
+    public Mono<Integer> countCommonFriends(Long userId, Long otherId) {
+        return ReactiveCalls.one(storageScheduler, () -> userService.countCommonFriends(userId, otherId));
+    }
+
+    public Flux<FriendRecommendation> getFriendRecommendations(Long userId, Integer limit) {
+        return ReactiveCalls.many(bulkScheduler, () -> userService.getFriendRecommendations(userId, limit));
+    }
+}
@@ -0,0 +1,308 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+// кэш ответов на чтение перед сервисами: фильм по id, популярные фильмы, друзья, общие друзья
+// и рекомендации друзей и фильмов.
+// вытеснение W-TinyLFU (Caffeine) с ограничением по суммарному весу, вес записи - число объектов в ней.
+// каждая запись помнит, от каких фильмов, пользователей и чьих лайков она зависит, и изменение объекта
+// удаляет ровно те записи, в которые он входит. метрики: cache_gets{cache="filmorate.reads"} и др.
+@Component
+public class ReadCache implements MeterBinder {
+    private static final String NAME = "filmorate.reads";
+
+    private final Cache<Key, Entry> cache;
+    // обратные индексы: id объекта -> записи, в которые он входит
+    private final Map<Long, Set<Entry>> byFilm = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Entry>> byUser = new ConcurrentHashMap<>();
+    // id пользователя -> записи, которые зависят от множества его лайков
+    private final Map<Long, Set<Entry>> byLiker = new ConcurrentHashMap<>();
+    // популярные фильмы зависят и от фильмов, которые в список пока не вошли
+    private final Set<Entry> popular = ConcurrentHashMap.newKeySet();
+    // растёт перед каждой инвалидацией; загрузка, во время которой он изменился, в кэше не остаётся
+    private final AtomicLong writes = new AtomicLong();
+
+    public ReadCache(@Value("${filmorate.cache.max-weight:100000}") long maxWeight) {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Key key, Entry entry) -> entry.weight())
+                // индексы чистятся в том же потоке, чтобы не ссылаться на удалённые записи
+                .executor(Runnable::run)
+                .removalListener((Key key, Entry entry, RemovalCause cause) -> unregister(entry))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, NAME);
+    }
+
+    public Film film(long id, Supplier<Film> loader) {
+        return get(new Key(Kind.FILM, id, 0), loader, film -> new Entry(film, new long[]{id}, null, 1));
+    }
+
+    public List<Film> popular(int count, Supplier<List<Film>> loader) {
+        return get(new Key(Kind.POPULAR, count, 0), loader, films -> {
+            Entry entry = new Entry(films, filmIds(films), null, films.size() + 1);
+            // в неполный список войдёт любой новый фильм
+            if (films.size() == count) {
+                Film last = films.get(count - 1);
+                entry.lastLikes = last.getLikes().size();
+                entry.lastId = last.getId();
+            }
+            return entry;
+        });
+    }
+
+    public List<User> friends(long userId, Supplier<List<User>> loader) {
+        return get(new Key(Kind.FRIENDS, userId, 0), loader,
+                friends -> new Entry(friends, null, userIds(friends, userId, userId), friends.size() + 1));
+    }
+
+    // список общих друзей симметричен, поэтому пара хранится одной записью
+    public List<User> commonFriends(long userId, long otherId, Supplier<List<User>> loader) {
+        Key key = new Key(Kind.COMMON_FRIENDS, Math.min(userId, otherId), Math.max(userId, otherId));
+        return get(key, loader,
+                friends -> new Entry(friends, null, userIds(friends, userId, otherId), friends.size() + 1));
+    }
+
+    // рекомендации зависят от списков друзей самого пользователя и каждого его друга,
+    // поэтому загрузка сама сообщает, чьи списки она прочитала
+    public List<FriendRecommendation> friendRecommendations(long userId, int limit,
+                                                            Supplier<Tracked<List<FriendRecommendation>>> loader) {
+        return get(new Key(Kind.FRIEND_RECOMMENDATIONS, userId, limit), loader,
+                tracked -> new Entry(tracked.value(), null, tracked.users(), tracked.users().length + 1));
+    }
+
+    // рекомендации фильмов зависят от лайкнутых пользователем и рекомендованных фильмов
+    // и от лайков самого пользователя и его соседей
+    public List<Film> filmRecommendations(long userId, int limit, Supplier<Tracked<List<Film>>> loader) {
+        return get(new Key(Kind.FILM_RECOMMENDATIONS, userId, limit), loader, tracked -> {
+            Entry entry = new Entry(tracked.value(), tracked.films(), null,
+                    tracked.films().length + tracked.likers().length + 1);
+            entry.likers = tracked.likers();
+            return entry;
+        });
+    }
+
+    // фильм изменён, удалён или потерял лайк: он мог только уйти из популярных или сдвинуться в них
+    public void filmChanged(long filmId) {
+        writes.incrementAndGet();
+        invalidate(byFilm.get(filmId));
+    }
+
+    // лайк мог поднять фильм в списки популярных, где его ещё нет;
+    // likes запрашивается, только если есть полный список, куда фильм может войти
+    public void likeAdded(long filmId, IntSupplier likes) {
+        filmChanged(filmId);
+        int current = -1;
+        for (Entry entry : popular) {
+            if (entry.lastId == 0) {
+                remove(entry);
+                continue;
+            }
+            if (current < 0)
+                current = likes.getAsInt();
+            if (current > entry.lastLikes || current == entry.lastLikes && filmId < entry.lastId)
+                remove(entry);
+        }
+    }
+
+    // новый фильм без лайков попадает только в неполные списки популярных
+    public void filmsCreated() {
+        writes.incrementAndGet();
+        for (Entry entry : popular) {
+            if (entry.lastId == 0)
+                remove(entry);
+        }
+    }
+
+    // массовые изменения лайков сбрасывают все списки популярных, а не проверяют каждый фильм
+    public void filmsChanged(Set<Long> filmIds) {
+        writes.incrementAndGet();
+        filmIds.forEach(filmId -> invalidate(byFilm.get(filmId)));
+        invalidate(popular);
+    }
+
+    // пользователь изменён, удалён или у него изменился список друзей
+    public void usersChanged(long... userIds) {
+        writes.incrementAndGet();
+        for (long userId : userIds) {
+            invalidate(byUser.get(userId));
+        }
+    }
+
+    // у пользователей изменились множества лайков
+    public void likesChanged(long... userIds) {
+        writes.incrementAndGet();
+        for (long userId : userIds) {
+            invalidate(byLiker.get(userId));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, R> R get(Key key, Supplier<T> loader, Function<T, Entry> entryOf) {
+        Entry cached = cache.getIfPresent(key);
+        if (cached != null)
+            return (R) cached.value;
+        // загрузка идёт без блокировок кэша: индексы заполняются до публикации записи,
+        // а если за это время прошла инвалидация, запись убирается - устаревшее значение не остаётся
+        long stamp = writes.get();
+        T value = loader.get();
+        Entry entry = entryOf.apply(value);
+        entry.key = key;
+        register(entry);
+        cache.put(key, entry);
+        if (writes.get() != stamp)
+            remove(entry);
+        return (R) entry.value;
+    }
+
+    private void register(Entry entry) {
+        if (entry.films != null) {
+            for (long filmId : entry.films) {
+                register(byFilm, filmId, entry);
+            }
+        }
+        if (entry.users != null) {
+            for (long userId : entry.users) {
+                register(byUser, userId, entry);
+            }
+        }
+        if (entry.likers != null) {
+            for (long userId : entry.likers) {
+                register(byLiker, userId, entry);
+            }
+        }
+        if (entry.key.kind() == Kind.POPULAR)
+            popular.add(entry);
+    }
+
+    private void unregister(Entry entry) {
+        if (entry.films != null) {
+            for (long filmId : entry.films) {
+                unregister(byFilm, filmId, entry);
+            }
+        }
+        if (entry.users != null) {
+            for (long userId : entry.users) {
+                unregister(byUser, userId, entry);
+            }
+        }
+        if (entry.likers != null) {
+            for (long userId : entry.likers) {
+                unregister(byLiker, userId, entry);
+            }
+        }
+        popular.remove(entry);
+    }
+
+    // множество меняется внутри compute, чтобы не добавить запись в уже выброшенное пустое множество
+    private static void register(Map<Long, Set<Entry>> index, long id, Entry entry) {
+        index.compute(id, (key, entries) -> {
+            Set<Entry> result = entries == null ? ConcurrentHashMap.newKeySet() : entries;
+            result.add(entry);
+            return result;
+        });
+    }
+
+    private static void unregister(Map<Long, Set<Entry>> index, long id, Entry entry) {
+        index.computeIfPresent(id, (key, entries) -> {
+            entries.remove(entry);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+
+    private void invalidate(Set<Entry> entries) {
+        if (entries == null)
+            return;
+        for (Entry entry : entries) {
+            remove(entry);
+        }
+    }
+
+    // удаляется именно эта запись: более новая загрузка под тем же ключом остаётся
+    private void remove(Entry entry) {
+        if (!cache.asMap().remove(entry.key, entry))
+            unregister(entry);
+    }
+
+    private static long[] filmIds(List<Film> films) {
+        long[] ids = new long[films.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = films.get(i).getId();
+        }
+        return ids;
+    }
+
+    // список зависит от самих пользователей и от каждого, кто в него вошёл:
+    // в ответе есть их данные и списки друзей
+    private static long[] userIds(List<User> users, long userId, long otherId) {
+        long[] ids = new long[users.size() + 2];
+        for (int i = 0; i < users.size(); i++) {
+            ids[i] = users.get(i).getId();
+        }
+        ids[users.size()] = userId;
+        ids[users.size() + 1] = otherId;
+        return ids;
+    }
+
+    private enum Kind {
+        FILM, POPULAR, FRIENDS, COMMON_FRIENDS, FRIEND_RECOMMENDATIONS, FILM_RECOMMENDATIONS
+    }
+
+    // загруженное значение и то, от изменения чего оно устаревает: фильмы, пользователи и лайки пользователей
+    public record Tracked<T>(T value, long[] films, long[] users, long[] likers) {
+        public Tracked(T value, long[] users) {
+            this(value, null, users, null);
+        }
+    }
+
+    private record Key(Kind kind, long first, long second) {
+    }
+
+    // сравнение по ссылке: индексы и удаление различают загрузки одного ключа
+    private static final class Entry {
+        final Object value;
+        final long[] films;
+        final long[] users;
+        final int weight;
+        Key key;
+        // пользователи, от лайков которых зависит запись
+        long[] likers;
+        // последний фильм полного списка популярных; lastId == 0 - список неполный
+        int lastLikes;
+        long lastId;
+
+        Entry(Object value, long[] films, long[] users, int weight) {
+            this.value = value;
+            this.films = films;
+            this.users = users;
+            this.weight = weight;
+        }
+
+        int weight() {
+            return weight;
+        }
+    }
+}
@@ -1,30 +1,57 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.StorageValidator;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.LongStream;
 
 @Service
+// время каждого метода с гистограммой: filmorate_service_seconds{class, method}
+@Timed(value = "filmorate.service", histogram = true)
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int DEFAULT_RECOMMENDATIONS = 10;
+    private static final int MAX_RECOMMENDATIONS = 100;
+    // промах по id встречается часто (перебор id клиентом), исключение создаётся один раз
+    private static final NotFoundException NOT_FOUND = new NotFoundException();
+
     private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final ReadCache readCache;
 
     public Collection<User> findAll() {
         Collection<User> users = userStorage.findAll();
-        log.debug("Найден список пользователей {}: ", users);
-        log.info("Всего пользователей: {}", users.size());
+        log.debug("Всего пользователей: {}", users.size());
         return users;
     }
 
+    // GET /users?after={id}&limit={limit}
+    public List<User> findPage(Long after, Integer limit) {
+        return userStorage.findPage(validateAfter(after), validateLimit(limit));
+    }
+
     public User create(User user) {
         User createUser = userStorage.create(user);
         log.info("Создан пользователь с id {}: ", createUser.getId());
@@ -42,6 +69,7 @@ public class UserService {
             throw new NotFoundException("Пользователь с id=" + user.getId() + " не найден");
         }
         User updateUser = userStorage.update(user);
+        readCache.usersChanged(updateUser.getId());
         log.info("Обновлен пользователь с id {}: ", updateUser.getId());
         return updateUser;
     }
@@ -56,7 +84,19 @@ public class UserService {
 
     public void delete(Long id) {
         validateId(id);
+        // списки друзей его друзей тоже меняются
+        long[] friends = userStorage.findById(id).map(user -> user.getFriends().snapshot()).orElse(new long[0]);
+        // лайки снимаются до удаления, пока их видно в хранилище. хранилище в памяти с этого момента
+        // не принимает лайков пользователя, даже если addLike уже прошёл проверку пользователя выше;
+        // в базе такой лайк не вставится после удаления из-за внешнего ключа, а вставленный раньше
+        // снимается вместе с пользователем (JdbcUserStorage.delete)
+        long[] films = filmStorage.removeLikesOf(id);
         userStorage.delete(id);
+        readCache.usersChanged(id);
+        readCache.usersChanged(friends);
+        readCache.likesChanged(id);
+        // потеря лайков только опускает фильм, поэтому затронуты лишь записи с этими фильмами
+        Arrays.stream(films).forEach(readCache::filmChanged);
         log.info("Пользователь успешно удален");
     }
 
@@ -67,67 +107,182 @@ public class UserService {
         if (userId.equals(friendId))
             throw new ValidationException("Нельзя добавить себя в друзья");
 
-        User user = userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
-        User friend = userStorage.findById(friendId).orElseThrow(() ->
-                notFoundFriend(friendId));
-        user.getFriends().add(friendId);
-        friend.getFriends().add(userId); // и пользователь, и его друг должны быть добавлены
-        log.info("Пользователь {} добавил в друзья пользователя {}", userId, friendId);
-        userStorage.update(user);
-        userStorage.update(friend);
+        if (userStorage.link(userId, friendId))
+            readCache.usersChanged(userId, friendId);
+        log.debug("Пользователь {} добавил в друзья пользователя {}", userId, friendId);
     }
 
     public void removeFriend(Long userId, Long friendId) {
         validateId(userId);
         validateId(friendId);
-        User user = userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
-        User friend = userStorage.findById(friendId).orElseThrow(() ->
-                notFoundFriend(friendId));
-        user.getFriends().remove(friendId);
-        friend.getFriends().remove(userId);
-        log.info("Пользователь {} удалил из друзей пользователя {}", userId, friendId);
-        userStorage.update(user);
-        userStorage.update(friend);
+        if (userStorage.unlink(userId, friendId))
+            readCache.usersChanged(userId, friendId);
+        log.debug("Пользователь {} удалил из друзей пользователя {}", userId, friendId);
+    }
+
+    // POST /users/batch
+    // все пользователи проверяются заранее, некорректные отклоняются, остальные создаются одной пачкой
+    public List<BatchResult> createAll(List<User> users) {
+        validateBatchSize(users.size());
+        Batch<User> batch = new Batch<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (user == null) {
+                batch.reject(i, BatchResult.invalid("Пустой элемент"));
+                continue;
+            }
+            try {
+                StorageValidator.validateUser(user);
+                batch.accept(i, user);
+            } catch (ValidationException e) {
+                batch.reject(i, BatchResult.invalid(e.getMessage()));
+            }
+        }
+        List<BatchResult> results = batch.complete(userStorage.createAll(batch.accepted()),
+                (user, created) -> BatchResult.created(created.getId()));
+        log.info("Пакетная загрузка пользователей: создано {} из {}", batch.accepted().size(), users.size());
+        return results;
+    }
+
+    // POST /users/friends/batch
+    public List<BatchResult> addFriends(List<Friendship> friendships) {
+        validateBatchSize(friendships.size());
+        Batch<Friendship> batch = new Batch<>(friendships.size());
+        for (int i = 0; i < friendships.size(); i++) {
+            Friendship friendship = friendships.get(i);
+            if (friendship == null || !isValidId(friendship.userId()) || !isValidId(friendship.friendId())) {
+                batch.reject(i, BatchResult.invalid("id должен быть > 0"));
+            } else if (friendship.userId().equals(friendship.friendId())) {
+                batch.reject(i, BatchResult.invalid("Нельзя добавить себя в друзья"));
+            } else {
+                batch.accept(i, friendship);
+            }
+        }
+        List<BatchResult> results = batch.complete(userStorage.linkAll(batch.accepted()),
+                (friendship, status) -> status == BatchStatus.NOT_FOUND
+                        ? BatchResult.notFound("Пользователь не найден")
+                        : BatchResult.of(status));
+        for (int i = 0; i < friendships.size(); i++) {
+            if (results.get(i).status() == BatchStatus.OK)
+                readCache.usersChanged(friendships.get(i).userId(), friendships.get(i).friendId());
+        }
+        log.info("Пакетная загрузка друзей: добавлено {} из {}", Batch.count(results, BatchStatus.OK),
+                friendships.size());
+        return results;
     }
 
     public List<User> getAllFriends(Long userId) {
         validateId(userId);
-        // сначала находим юзера по айди
-        User user = userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
-        // затем проходимся стримом по его друзьям и собираем их в список
-        return user.getFriends()
-                .stream().map(id -> userStorage.findById(id)
-                        .orElseThrow(() -> notFoundUser(id))).toList();
+        return readCache.friends(userId, () -> {
+            // сначала находим юзера по айди
+            User user = userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
+            // затем загружаем всех его друзей одной массовой операцией
+            List<User> friends = userStorage.findAllByIds(user.getFriends());
+            // друг, удалённый между чтением списка и загрузкой, в ответ не попадает
+            if (friends.size() < user.getFriends().size())
+                log.debug("У пользователя {} пропущено удалённых друзей: {}", userId,
+                        user.getFriends().size() - friends.size());
+            return friends;
+        });
     }
 
     // здесь будет выводиться общий список друзей
     public List<User> getCommonFriends(Long userId, Long otherId) {
+        validateId(userId);
+        validateId(otherId);
+        return readCache.commonFriends(userId, otherId, () -> {
+            User user = userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
+            User friend = userStorage.findById(otherId).orElseThrow(() ->
+                    notFoundFriend(otherId));
+
+            // пересечение считает хранилище: в памяти - по отсортированным массивам id, в базе - одним запросом
+            return userStorage.findCommonFriends(user.getId(), friend.getId());
+        });
+    }
+
+    // количество общих друзей без загрузки самих пользователей
+    public int countCommonFriends(Long userId, Long otherId) {
         validateId(userId);
         validateId(otherId);
         User user = userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
         User friend = userStorage.findById(otherId).orElseThrow(() ->
                 notFoundFriend(otherId));
+        return userStorage.countCommonFriends(user.getId(), friend.getId());
+    }
 
-        HashSet<Long> commonFriends = new HashSet<>(user.getFriends());
-        // retainAll - изменяет исходное множество
-        commonFriends.retainAll(friend.getFriends());
-
-        return commonFriends.stream().map(id -> userStorage
-                .findById(id).orElseThrow(() -> notFoundUser(id))).toList();
+    // GET /users/{id}/recommendations?limit={limit}
+    // результат кэшируется и сбрасывается, когда меняется список друзей пользователя, любого его друга
+    // или рекомендованного пользователя, - так он пересчитывается только после изменений в графе рядом
+    public List<FriendRecommendation> getFriendRecommendations(Long userId, Integer limit) {
+        validateId(userId);
+        int count = validateRecommendationsLimit(limit);
+        return readCache.friendRecommendations(userId, count, () -> {
+            User user = userStorage.findById(userId).orElseThrow(() -> notFoundUser(userId));
+            long[] friends = user.getFriends().snapshot();
+            List<User> friendUsers = userStorage.findAllByIds(user.getFriends());
+            long[] candidates = MutualFriends.candidates(userId, friends, friendUsers, count);
+            List<FriendRecommendation> recommendations = new ArrayList<>(candidates.length);
+            for (User candidate : userStorage.findAllByIds(Arrays.stream(candidates).boxed().toList())) {
+                int mutual = IdSet.intersectionSize(friends, candidate.getFriends().snapshot());
+                if (mutual > 0)
+                    recommendations.add(new FriendRecommendation(candidate, mutual));
+            }
+            recommendations.sort(Comparator.comparingInt(FriendRecommendation::mutualFriends).reversed()
+                    .thenComparingLong(recommendation -> recommendation.user().getId()));
+            List<FriendRecommendation> result = List.copyOf(
+                    recommendations.subList(0, Math.min(count, recommendations.size())));
+            long[] dependencies = LongStream.concat(LongStream.of(userId),
+                    LongStream.concat(Arrays.stream(friends), Arrays.stream(candidates))).toArray();
+            return new ReadCache.Tracked<>(result, dependencies);
+        });
     }
 
     private NotFoundException notFoundUser(Long userId) {
-        log.warn("Пользователь не найден с id: {}", userId);
-        return new NotFoundException();
+        log.debug("Пользователь не найден с id: {}", userId);
+        return NOT_FOUND;
     }
 
     private NotFoundException notFoundFriend(Long friendId) {
-        log.warn("Друг пользователя не найден, его id: {}", friendId);
-        return new NotFoundException();
+        log.debug("Друг пользователя не найден, его id: {}", friendId);
+        return NOT_FOUND;
+    }
+
+    private long validateAfter(Long after) {
+        if (after == null)
+            return 0;
+        if (after < 0)
+            throw new ValidationException("after должен быть >= 0");
+        return after;
+    }
+
+    private int validateLimit(Integer limit) {
+        if (limit == null)
+            return DEFAULT_PAGE_SIZE;
+        if (limit <= 0 || limit > MAX_PAGE_SIZE)
+            throw new ValidationException("limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        return limit;
+    }
+
+    private int validateRecommendationsLimit(Integer limit) {
+        if (limit == null)
+            return DEFAULT_RECOMMENDATIONS;
+        if (limit <= 0 || limit > MAX_RECOMMENDATIONS)
+            throw new ValidationException("limit должен быть от 1 до " + MAX_RECOMMENDATIONS);
+        return limit;
+    }
+
+    private void validateBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE)
+            throw new ValidationException("В одном запросе не больше " + MAX_BATCH_SIZE
+                    + " элементов, большие объёмы передаются в формате NDJSON");
+    }
+
+    private boolean isValidId(Long id) {
+        return id != null && id > 0;
     }
 
     private void validateId(Long id) {
-        if (id == null || id <= 0) {
+        if (!isValidId(id)) {
             log.warn("Некорректный id: {}", id);
             throw new ValidationException("id должен быть > 0");
         }
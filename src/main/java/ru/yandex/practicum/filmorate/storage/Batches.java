@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// вспомогательные методы пакетных операций хранилищ
+public final class Batches {
+    private Batches() {
+    }
+
+    // номера элементов пачки, сгруппированные по id объекта, в порядке первого появления:
+    // изменения одного объекта выполняются вместе, под одной блокировкой
+    public static <T> Map<Long, List<Integer>> indexesBy(List<T> items, Function<T, Long> idOf) {
+        Map<Long, List<Integer>> indexes = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            indexes.computeIfAbsent(idOf.apply(items.get(i)), id -> new ArrayList<>()).add(i);
+        }
+        return indexes;
+    }
+}
@@ -1,8 +1,14 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface FilmStorage {
@@ -14,5 +20,56 @@ public interface FilmStorage {
 
     Collection<Film> findAll();
 
+    // страница из limit объектов с id больше afterId, по возрастанию id
+    List<Film> findPage(long afterId, int limit);
+
     Optional<Film> findById(Long id);
+
+    // найденные фильмы в порядке ids одной массовой операцией; несуществующие id пропускаются
+    List<Film> findAllByIds(Collection<Long> ids);
+
+    long count();
+
+    // обратный индекс лайков: id фильмов, которые лайкнул пользователь, по возрастанию
+    long[] findLikedFilmIds(Long userId);
+
+    // то же для многих пользователей одной операцией; пользователи без лайков в результат не входят
+    Map<Long, long[]> findLikedFilmIds(Collection<Long> userIds);
+
+    // общее количество лайков всех фильмов
+    long countLikes();
+
+    // количество лайков одного фильма, 0 - если фильма нет
+    int countLikes(Long filmId);
+
+    // лайк от пользователя ставится не больше одного раза,
+    // результат - изменилось ли что-нибудь
+    boolean addLike(Long filmId, Long userId);
+
+    boolean removeLike(Long filmId, Long userId);
+
+    // снимает все лайки пользователя по обратному индексу, за O(его лайков);
+    // результат - id фильмов, у которых лайк был снят
+    long[] removeLikesOf(Long userId);
+
+    // первые count фильмов по количеству лайков
+    List<Film> getPopular(int count);
+
+    // пакетные операции: результат по каждому элементу в порядке элементов.
+    // по умолчанию элементы выполняются по одному, хранилища заменяют это массовыми изменениями
+    default List<Film> createAll(List<Film> films) {
+        return films.stream().map(this::create).toList();
+    }
+
+    default List<BatchStatus> addLikes(List<Like> likes) {
+        List<BatchStatus> statuses = new ArrayList<>(likes.size());
+        for (Like like : likes) {
+            try {
+                statuses.add(addLike(like.filmId(), like.userId()) ? BatchStatus.OK : BatchStatus.UNCHANGED);
+            } catch (NotFoundException e) {
+                statuses.add(BatchStatus.NOT_FOUND);
+            }
+        }
+        return statuses;
+    }
 }
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// генератор идентификаторов для хранилищ: выдаёт id за O(1) и без гонок при параллельном создании
+public class IdGenerator {
+    private final AtomicLong lastId = new AtomicLong();
+
+    public long nextId() {
+        return lastId.incrementAndGet();
+    }
+
+    // наибольший выданный или встреченный id
+    public long lastId() {
+        return lastId.get();
+    }
+
+    // вызывается, когда в хранилище попадает объект с уже известным id (предзагрузка, восстановление),
+    // чтобы следующий выданный id был больше всех существующих
+    public void observe(long id) {
+        lastId.accumulateAndGet(id, Math::max);
+    }
+}
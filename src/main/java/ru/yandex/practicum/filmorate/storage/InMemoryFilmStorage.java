@@ -1,25 +1,98 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 
-import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
 @Component
+// хранилище по умолчанию; filmorate.storage.type=jdbc заменяет его хранилищем в базе данных
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory", matchIfMissing = true)
 @Slf4j
+// опубликованный фильм не меняется: изменение собирает копию и подменяет ею фильм в карте,
+// поэтому читатели и сериализация без блокировок видят фильм целиком до или после изменения
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    // упорядочены по id, чтобы отдавать список страницами по курсору
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final SnapshotView<Film> snapshot = new SnapshotView<>(films);
+    private final IdGenerator idGenerator = new IdGenerator();
+    private final PopularityIndex popularity = new PopularityIndex();
+    private final LikeIndex likedFilms = new LikeIndex();
+    // удалённые пользователи: их лайки больше не принимаются. id не переиспользуются,
+    // поэтому запись остаётся навсегда - по Long на удалённого пользователя
+    private final Set<Long> deletedUsers = ConcurrentHashMap.newKeySet();
+    // изменения одного фильма выполняются под его блокировкой
+    private final StripedLocks locks = new StripedLocks();
+    // размер skip-list считается обходом, поэтому счётчики ведём отдельно
+    private final LongAdder filmCount = new LongAdder();
+    private final LongAdder likeCount = new LongAdder();
 
     @Override
     public Film create(Film film) {
-        validate(film);
+        StorageValidator.validateFilm(film);
         // формируем дополнительные данные
-        film.setId(getNextId());
-        films.put(film.getId(), film);
-        log.info("Создан фильм id={}", film.getId());
+        film.setId(idGenerator.nextId());
+        if (film.getLikes() == null)
+            film.setLikes(new IdSet());
+        // фильм виден сразу после publish: лайк или удаление по угаданному id ждут, пока лягут рейтинг и индексы
+        Lock lock = locks.get(film.getId());
+        lock.lock();
+        try {
+            publish(film);
+            popularity.put(film.getId(), film.getLikes().size());
+            likedFilms.addAll(film.getId(), film.getLikes().snapshot());
+            filmCount.increment();
+            likeCount.add(film.getLikes().size());
+        } finally {
+            lock.unlock();
+        }
+        log.debug("Создан фильм id={}", film.getId());
+        return film;
+    }
+
+    // наибольший выданный id: снимок сохраняет его, чтобы id удалённых объектов не выдавались повторно
+    public long lastId() {
+        return idGenerator.lastId();
+    }
+
+    // id, который уже выдавался, даже если объекта с ним больше нет
+    public void observeId(long id) {
+        idGenerator.observe(id);
+    }
+
+    // загрузка фильма с уже назначенным id (предзагрузка или восстановление данных)
+    public Film restore(Film film) {
+        if (film.getLikes() == null)
+            film.setLikes(new IdSet());
+        idGenerator.observe(film.getId());
+        Lock lock = locks.get(film.getId());
+        lock.lock();
+        try {
+            Film previous = publish(film);
+            popularity.put(film.getId(), film.getLikes().size());
+            if (previous == null) {
+                filmCount.increment();
+            } else {
+                likeCount.add(-previous.getLikes().size());
+                likedFilms.removeAll(film.getId(), previous.getLikes().snapshot());
+            }
+            likedFilms.addAll(film.getId(), film.getLikes().snapshot());
+            likeCount.add(film.getLikes().size());
+        } finally {
+            lock.unlock();
+        }
         return film;
     }
 
@@ -29,25 +102,92 @@ public class InMemoryFilmStorage implements FilmStorage {
             log.warn("Ошибка валидации фильма: некорректный id={}", newFilm.getId());
             throw new ValidationException("id должен быть > 0");
         }
-        validate(newFilm);
-        Film oldFilm = films.get(newFilm.getId());
-        // если фильм найден и все условия соблюдены, обновляем его содержимое
-        if (newFilm.getName() != null) oldFilm.setName(newFilm.getName());
-        if (newFilm.getDescription() != null) oldFilm.setDescription(newFilm.getDescription());
-        if (newFilm.getReleaseDate() != null) oldFilm.setReleaseDate(newFilm.getReleaseDate());
-        if (newFilm.getDuration() != null) oldFilm.setDuration(newFilm.getDuration());
-        log.info("Обновлён фильм id={}", newFilm.getId());
-        return oldFilm;
+        StorageValidator.validateFilm(newFilm);
+        Lock lock = locks.get(newFilm.getId());
+        lock.lock();
+        try {
+            Film film = copyOf(getExisting(newFilm.getId()));
+            // если фильм найден и все условия соблюдены, обновляем его содержимое
+            if (newFilm.getName() != null) film.setName(newFilm.getName());
+            if (newFilm.getDescription() != null) film.setDescription(newFilm.getDescription());
+            if (newFilm.getReleaseDate() != null) film.setReleaseDate(newFilm.getReleaseDate());
+            if (newFilm.getDuration() != null) film.setDuration(newFilm.getDuration());
+            changed(film);
+            log.debug("Обновлён фильм id={}", newFilm.getId());
+            return film;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void delete(Long id) {
-        films.remove(id);
+        Lock lock = locks.get(id);
+        lock.lock();
+        try {
+            Film removed = unpublish(id);
+            popularity.remove(id);
+            if (removed != null) {
+                likedFilms.removeAll(id, removed.getLikes().snapshot());
+                filmCount.decrement();
+                likeCount.add(-removed.getLikes().size());
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public Collection<Film> findAll() {
-        return films.values();
+        return snapshot.get();
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        List<Film> page = new ArrayList<>(limit);
+        for (Film film : films.tailMap(afterId, false).values()) {
+            if (page.size() == limit)
+                break;
+            page.add(film);
+        }
+        return page;
+    }
+
+    @Override
+    public List<Film> findAllByIds(Collection<Long> ids) {
+        return ids.stream().map(films::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public long count() {
+        return filmCount.sum();
+    }
+
+    @Override
+    public long countLikes() {
+        return likeCount.sum();
+    }
+
+    @Override
+    public int countLikes(Long filmId) {
+        Film film = films.get(filmId);
+        return film == null ? 0 : film.getLikes().size();
+    }
+
+    @Override
+    public long[] findLikedFilmIds(Long userId) {
+        return likedFilms.films(userId);
+    }
+
+    @Override
+    public Map<Long, long[]> findLikedFilmIds(Collection<Long> userIds) {
+        Map<Long, long[]> result = new HashMap<>();
+        for (Long userId : userIds) {
+            long[] liked = likedFilms.films(userId);
+            if (liked.length > 0)
+                result.put(userId, liked);
+        }
+        return result;
     }
 
     @Override
@@ -55,26 +195,169 @@ public class InMemoryFilmStorage implements FilmStorage {
         return Optional.ofNullable(films.get(id));
     }
 
-    // вспомогательный метод для генерации идентификатора нового поста
-    private long getNextId() {
-        long currentMaxId = films.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
-    }
-
-    private void validate(Film film) {
-        // проверяем выполнение необходимых условий
-        if (film.getDescription() != null && film.getDescription().length() > 200)
-            throw new ValidationException("Максимальная длина описания — 200 символов");
-        if (film.getName() == null || film.getName().isBlank())
-            throw new ValidationException("Название не может быть пустым");
-        if (film.getReleaseDate() == null
-                || film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28)))
-            throw new ValidationException("Дата релиза — не раньше 28 декабря 1895 года");
-        if (film.getDuration() == null || film.getDuration() <= 0)
-            throw new ValidationException("Продолжительность фильма должна быть положительным числом");
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            Film current = getExisting(filmId);
+            if (deletedUsers.contains(userId))
+                throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+            if (current.getLikes().contains(userId))
+                return false;
+            Film film = copyOf(current);
+            film.getLikes().add(userId);
+            // рейтинг обновляется только когда лайков действительно стало больше
+            popularity.put(filmId, film.getLikes().size());
+            likedFilms.add(userId, filmId);
+            likeCount.increment();
+            changed(film);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            return unlike(getExisting(filmId), userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // фильмы берутся из обратного индекса и меняются под своей блокировкой по очереди.
+    // новые лайки пользователя перед этим запрещаются, поэтому после вызова их у фильмов нет и не будет
+    @Override
+    public long[] removeLikesOf(Long userId) {
+        refuseLikesOf(userId);
+        long[] liked = likedFilms.films(userId);
+        long[] changed = new long[liked.length];
+        int size = 0;
+        for (long filmId : liked) {
+            Lock lock = locks.get(filmId);
+            lock.lock();
+            try {
+                Film film = films.get(filmId);
+                if (film != null && unlike(film, userId))
+                    changed[size++] = filmId;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return Arrays.copyOf(changed, size);
+    }
+
+    // лайк, который проверил пользователя до запрета, к возврату уже стоит в обратном индексе,
+    // а следующие лайки видят запрет под блокировкой своего фильма
+    public void refuseLikesOf(Long userId) {
+        deletedUsers.add(userId);
+        locks.passAll();
+    }
+
+    // лайки пачки группируются по фильму: на каждый фильм одна блокировка,
+    // одна копия множества лайков и одно обновление рейтинга
+    @Override
+    public List<BatchStatus> addLikes(List<Like> likes) {
+        BatchStatus[] statuses = new BatchStatus[likes.size()];
+        Batches.indexesBy(likes, Like::filmId).forEach((filmId, indexes) -> {
+            Lock lock = locks.get(filmId);
+            lock.lock();
+            try {
+                Film current = films.get(filmId);
+                if (current == null) {
+                    indexes.forEach(i -> statuses[i] = BatchStatus.NOT_FOUND);
+                    return;
+                }
+                long[] added = new long[indexes.size()];
+                Set<Long> seen = new HashSet<>();
+                int size = 0;
+                for (int i : indexes) {
+                    Long userId = likes.get(i).userId();
+                    if (deletedUsers.contains(userId)) {
+                        statuses[i] = BatchStatus.NOT_FOUND;
+                    // повтор в той же пачке тоже ничего не меняет
+                    } else if (current.getLikes().contains(userId) || !seen.add(userId)) {
+                        statuses[i] = BatchStatus.UNCHANGED;
+                    } else {
+                        statuses[i] = BatchStatus.OK;
+                        added[size++] = userId;
+                    }
+                }
+                if (size > 0) {
+                    long[] addedIds = Arrays.copyOf(added, size);
+                    Film film = copyOf(current);
+                    likeCount.add(film.getLikes().addAll(addedIds));
+                    likedFilms.addAll(filmId, addedIds);
+                    popularity.put(filmId, film.getLikes().size());
+                    changed(film);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+        return Arrays.asList(statuses);
+    }
+
+    @Override
+    public List<Film> getPopular(int count) {
+        return popularity.top(count).stream()
+                .map(films::get)
+                // фильм мог быть удалён между чтением рейтинга и выборкой
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private Film getExisting(Long id) {
+        Film film = films.get(id);
+        if (film == null) {
+            log.debug("Фильм не найден с id: {}", id);
+            throw new NotFoundException("Фильм с id=" + id + " не найден");
+        }
+        return film;
+    }
+
+    // лайк, рейтинг и обратный индекс меняются вместе под блокировкой фильма
+    private boolean unlike(Film current, Long userId) {
+        if (!current.getLikes().contains(userId))
+            return false;
+        Film film = copyOf(current);
+        film.getLikes().remove(userId);
+        popularity.put(film.getId(), film.getLikes().size());
+        likedFilms.remove(userId, film.getId());
+        likeCount.decrement();
+        changed(film);
+        return true;
+    }
+
+    // вызывается под блокировкой фильма с копией, собранной из опубликованного фильма
+    private void changed(Film film) {
+        film.setVersion(film.getVersion() + 1);
+        publish(film);
+    }
+
+    // карта меняется только через snapshot, вместе со списком всех значений, под блокировкой фильма
+    private Film publish(Film film) {
+        return snapshot.put(film.getId(), film);
+    }
+
+    private Film unpublish(Long id) {
+        return snapshot.remove(id);
+    }
+
+    // лайки копии разделяют массив с оригиналом, пока одно из множеств не изменится
+    private static Film copyOf(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setLikes(film.getLikes().copy());
+        copy.setVersion(film.getVersion());
+        return copy;
     }
 }
@@ -1,27 +1,86 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.IdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
-import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
 @Component
+// хранилище по умолчанию; filmorate.storage.type=jdbc заменяет его хранилищем в базе данных
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory", matchIfMissing = true)
 @Slf4j
+// опубликованный пользователь не меняется: изменение подменяет его копией, как в InMemoryFilmStorage
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
+    // упорядочены по id, чтобы отдавать список страницами по курсору
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final SnapshotView<User> snapshot = new SnapshotView<>(users);
+    private final IdGenerator idGenerator = new IdGenerator();
+    // изменения одного пользователя выполняются под его блокировкой
+    private final StripedLocks locks = new StripedLocks();
+    // размер skip-list считается обходом, поэтому счётчики ведём отдельно;
+    // дружба учитывается с обеих сторон, поэтому считаем половины связей
+    private final LongAdder userCount = new LongAdder();
+    private final LongAdder friendHalfLinks = new LongAdder();
 
     @Override
     public User create(User user) {
-        validate(user);
+        StorageValidator.validateUser(user);
         if (user.getName() == null || user.getName().isBlank())
             user.setName(user.getLogin());
         // формируем дополнительные данные
-        user.setId(getNextId());
-        users.put(user.getId(), user);
-        log.info("Создан пользователь id={}", user.getId());
+        user.setId(idGenerator.nextId());
+        if (user.getFriends() == null)
+            user.setFriends(new IdSet());
+        Lock lock = locks.get(user.getId());
+        lock.lock();
+        try {
+            publish(user);
+            userCount.increment();
+            friendHalfLinks.add(user.getFriends().size());
+        } finally {
+            lock.unlock();
+        }
+        log.debug("Создан пользователь id={}", user.getId());
+        return user;
+    }
+
+    // наибольший выданный id: снимок сохраняет его, чтобы id удалённых объектов не выдавались повторно
+    public long lastId() {
+        return idGenerator.lastId();
+    }
+
+    // id, который уже выдавался, даже если объекта с ним больше нет
+    public void observeId(long id) {
+        idGenerator.observe(id);
+    }
+
+    // загрузка пользователя с уже назначенным id (предзагрузка или восстановление данных)
+    public User restore(User user) {
+        if (user.getFriends() == null)
+            user.setFriends(new IdSet());
+        idGenerator.observe(user.getId());
+        Lock lock = locks.get(user.getId());
+        lock.lock();
+        try {
+            User previous = publish(user);
+            if (previous == null) {
+                userCount.increment();
+            } else {
+                friendHalfLinks.add(-previous.getFriends().size());
+            }
+            friendHalfLinks.add(user.getFriends().size());
+        } finally {
+            lock.unlock();
+        }
         return user;
     }
 
@@ -31,35 +90,93 @@ public class InMemoryUserStorage implements UserStorage {
             log.warn("Ошибка валидации пользователя: некорректный id={}", newUser.getId());
             throw new ValidationException("id должен быть > 0");
         }
-        validate(newUser);
-        User oldUser = users.get(newUser.getId());
-        if (newUser.getEmail() != null && !newUser.getEmail().isBlank())
-            oldUser.setEmail(newUser.getEmail());
-        // если юзер найден и все условия соблюдены, обновляем его содержимое
-        // обновляем поля по отдельности чтобы ничего не ломалось
-        if (newUser.getLogin() != null)
-            oldUser.setLogin(newUser.getLogin());
-        if (newUser.getName() != null) {
-            if (newUser.getName().isBlank()) {
-                oldUser.setName(oldUser.getLogin());
-            } else {
-                oldUser.setName(newUser.getName());
+        StorageValidator.validateUser(newUser);
+        Lock lock = locks.get(newUser.getId());
+        lock.lock();
+        try {
+            User user = copyOf(getExisting(newUser.getId()));
+            if (newUser.getEmail() != null && !newUser.getEmail().isBlank())
+                user.setEmail(newUser.getEmail());
+            // если юзер найден и все условия соблюдены, обновляем его содержимое
+            // обновляем поля по отдельности чтобы ничего не ломалось
+            if (newUser.getLogin() != null)
+                user.setLogin(newUser.getLogin());
+            if (newUser.getName() != null) {
+                if (newUser.getName().isBlank()) {
+                    user.setName(user.getLogin());
+                } else {
+                    user.setName(newUser.getName());
+                }
             }
+            if (newUser.getBirthday() != null)
+                user.setBirthday(newUser.getBirthday());
+            changed(user);
+            log.debug("Обновлён пользователь id={}", newUser.getId());
+            return user;
+        } finally {
+            lock.unlock();
         }
-        if (newUser.getBirthday() != null)
-            oldUser.setBirthday(newUser.getBirthday());
-        log.info("Обновлён пользователь id={}", newUser.getId());
-        return oldUser;
     }
 
     @Override
     public void delete(Long id) {
-        users.remove(id);
+        User removed;
+        Lock lock = locks.get(id);
+        lock.lock();
+        try {
+            removed = unpublish(id);
+            if (removed == null)
+                return;
+            userCount.decrement();
+            // своя сторона связей уходит вместе с пользователем, стороны друзей - ниже
+            friendHalfLinks.add(-removed.getFriends().size());
+        } finally {
+            lock.unlock();
+        }
+        // вторые стороны дружбы убираются под блокировкой каждого друга по очереди:
+        // новая связь с удалённым пользователем уже невозможна, а двух блокировок сразу не нужно
+        for (long friendId : removed.getFriends().snapshot()) {
+            Lock friendLock = locks.get(friendId);
+            friendLock.lock();
+            try {
+                User friend = users.get(friendId);
+                if (friend != null)
+                    removeFriend(friend, id);
+            } finally {
+                friendLock.unlock();
+            }
+        }
     }
 
     @Override
     public Collection<User> findAll() {
-        return users.values();
+        return snapshot.get();
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        List<User> page = new ArrayList<>(limit);
+        for (User user : users.tailMap(afterId, false).values()) {
+            if (page.size() == limit)
+                break;
+            page.add(user);
+        }
+        return page;
+    }
+
+    @Override
+    public List<User> findAllByIds(Collection<Long> ids) {
+        return ids.stream().map(users::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public long count() {
+        return userCount.sum();
+    }
+
+    @Override
+    public long countFriendships() {
+        return friendHalfLinks.sum() / 2;
     }
 
     @Override
@@ -67,23 +184,148 @@ public class InMemoryUserStorage implements UserStorage {
         return Optional.ofNullable(users.get(id));
     }
 
-    // вспомогательный метод для генерации идентификатора нового поста
-    private long getNextId() {
-        long currentMaxId = users.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
-    }
-
-    private void validate(User user) {
-        // проверяем выполнение необходимых условий
-        if (user.getEmail() == null || user.getEmail().isEmpty() || !user.getEmail().contains("@"))
-            throw new ValidationException("Электронная почта не может быть пустой и должна содержать символ @");
-        if (user.getLogin() == null || user.getLogin().contains(" ") || user.getLogin().isBlank())
-            throw new ValidationException("Логин не может быть пустым и содержать пробелы");
-        if (user.getBirthday() == null || user.getBirthday().isAfter(LocalDate.now()))
-            throw new ValidationException("Дата рождения не может быть в будущем.");
+    @Override
+    public boolean link(Long userId, Long friendId) {
+        List<Lock> pair = locks.getPair(userId, friendId);
+        pair.forEach(Lock::lock);
+        try {
+            User user = getExisting(userId);
+            User friend = getExisting(friendId);
+            // и пользователь, и его друг должны быть добавлены
+            boolean changed = addFriend(user, friendId);
+            return addFriend(friend, userId) || changed;
+        } finally {
+            pair.forEach(Lock::unlock);
+        }
+    }
+
+    @Override
+    public boolean unlink(Long userId, Long friendId) {
+        List<Lock> pair = locks.getPair(userId, friendId);
+        pair.forEach(Lock::lock);
+        try {
+            User user = getExisting(userId);
+            User friend = getExisting(friendId);
+            boolean changed = removeFriend(user, friendId);
+            return removeFriend(friend, userId) || changed;
+        } finally {
+            pair.forEach(Lock::unlock);
+        }
+    }
+
+    @Override
+    public List<User> findCommonFriends(Long userId, Long otherId) {
+        long[] common = IdSet.intersect(getExisting(userId).getFriends().snapshot(),
+                getExisting(otherId).getFriends().snapshot());
+        return Arrays.stream(common)
+                .mapToObj(users::get)
+                // друг мог быть удалён после чтения списков
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public int countCommonFriends(Long userId, Long otherId) {
+        return IdSet.intersectionSize(getExisting(userId).getFriends().snapshot(),
+                getExisting(otherId).getFriends().snapshot());
+    }
+
+    // одна сторона дружбы, когда вторая хранится в другом шарде (см. ShardedUserStorage)
+    public boolean linkHalf(Long userId, Long friendId) {
+        Lock lock = locks.get(userId);
+        lock.lock();
+        try {
+            return addFriend(getExisting(userId), friendId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // false, если пользователя уже нет
+    public boolean unlinkHalf(Long userId, Long friendId) {
+        Lock lock = locks.get(userId);
+        lock.lock();
+        try {
+            User user = users.get(userId);
+            return user != null && removeFriend(user, friendId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // стороны дружбы по отдельности: у шарда дружба со своим пользователем в другом шарде - одна сторона
+    public long countFriendHalfLinks() {
+        return friendHalfLinks.sum();
+    }
+
+    // одна сторона дружбы при восстановлении из журнала: второй пользователь мог быть
+    // уже удалён или ещё не восстановлен, и его сторона придёт вместе с ним
+    public void restoreHalfLink(Long userId, Long friendId, boolean linked) {
+        User user = users.get(userId);
+        if (user == null)
+            return;
+        if (linked) {
+            addFriend(user, friendId);
+        } else {
+            removeFriend(user, friendId);
+        }
+    }
+
+    // одна сторона дружбы; вызывается под блокировкой пользователя
+    private boolean addFriend(User current, long friendId) {
+        if (current.getFriends().contains(friendId))
+            return false;
+        User user = copyOf(current);
+        user.getFriends().add(friendId);
+        friendHalfLinks.increment();
+        changed(user);
+        return true;
+    }
+
+    private boolean removeFriend(User current, long friendId) {
+        if (!current.getFriends().contains(friendId))
+            return false;
+        User user = copyOf(current);
+        user.getFriends().remove(friendId);
+        friendHalfLinks.decrement();
+        changed(user);
+        return true;
+    }
+
+    // вызывается под блокировкой пользователя с копией, собранной из опубликованного пользователя
+    private void changed(User user) {
+        user.setVersion(user.getVersion() + 1);
+        publish(user);
+    }
+
+    // карта меняется только через snapshot, вместе со списком всех значений, под блокировкой пользователя
+    private User publish(User user) {
+        return snapshot.put(user.getId(), user);
+    }
+
+    private User unpublish(Long id) {
+        return snapshot.remove(id);
+    }
+
+    private User getExisting(Long id) {
+        User user = users.get(id);
+        if (user == null) {
+            log.debug("Пользователь не найден с id: {}", id);
+            throw new NotFoundException("Пользователь с id=" + id + " не найден");
+        }
+        return user;
+    }
+
+    // друзья копии разделяют массив с оригиналом, пока одно из множеств не изменится
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        copy.setFriends(user.getFriends().copy());
+        copy.setVersion(user.getVersion());
+        return copy;
     }
 }
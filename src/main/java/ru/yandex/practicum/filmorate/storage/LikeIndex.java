@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.IdSet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// обратный индекс лайков: пользователь -> фильмы, которые он лайкнул.
+// меняется вместе с лайками фильма под его блокировкой; множество одного пользователя меняется
+// внутри compute, поэтому опустевшее множество удаляется без гонки с добавлением в него
+class LikeIndex {
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<Long, IdSet> films = new ConcurrentHashMap<>();
+
+    void add(long userId, long filmId) {
+        films.compute(userId, (id, liked) -> {
+            IdSet result = liked == null ? new IdSet() : liked;
+            result.add(filmId);
+            return result;
+        });
+    }
+
+    void addAll(long filmId, long[] userIds) {
+        for (long userId : userIds) {
+            add(userId, filmId);
+        }
+    }
+
+    void remove(long userId, long filmId) {
+        films.computeIfPresent(userId, (id, liked) -> {
+            liked.remove(filmId);
+            return liked.isEmpty() ? null : liked;
+        });
+    }
+
+    void removeAll(long filmId, long[] userIds) {
+        for (long userId : userIds) {
+            remove(userId, filmId);
+        }
+    }
+
+    // отсортированный снимок; массив общий, изменять его нельзя
+    long[] films(long userId) {
+        IdSet liked = films.get(userId);
+        return liked == null ? EMPTY : liked.snapshot();
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// рейтинг фильмов по количеству лайков, поддерживается при каждом изменении лайков
+// сортированное дерево даёт обновление за O(log n) и выборку первых K за O(K),
+// поэтому на каждый запрос /films/popular не нужно заново сортировать все фильмы
+class PopularityIndex {
+    // больше лайков - выше, при равенстве - меньший id выше
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::id);
+
+    private final NavigableSet<Entry> ranking = new TreeSet<>(ORDER);
+    private final Map<Long, Integer> likesById = new HashMap<>();
+    // запросы рейтинга выполняются параллельно, изменения - по одному
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    void put(long id, int likes) {
+        lock.writeLock().lock();
+        try {
+            Integer oldLikes = likesById.put(id, likes);
+            if (oldLikes != null) {
+                if (oldLikes == likes)
+                    return;
+                ranking.remove(new Entry(id, oldLikes));
+            }
+            ranking.add(new Entry(id, likes));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer oldLikes = likesById.remove(id);
+            if (oldLikes != null)
+                ranking.remove(new Entry(id, oldLikes));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<Long> top(int count) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(Math.min(count, ranking.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            while (ids.size() < count && iterator.hasNext()) {
+                ids.add(iterator.next().id());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private record Entry(long id, int likes) {
+    }
+}
@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+// карта хранилища и неизменяемый список всех её значений по возрастанию id, который собирают писатели.
+// значения лежат блоками по диапазонам id; изменение копирует свой блок и оглавление блоков,
+// то есть O(CHUNK + n / CHUNK), а не весь список, и подменяет ими опубликованный список.
+// put и remove вызываются под блокировкой объекта id в хранилище: изменения одного id приходят
+// в карту и в список в одном порядке, а изменения разных id подменяют список через CAS без общей блокировки.
+// читатель берёт опубликованный список как есть: не копирует, не ждёт писателей и видит
+// состояние после какого-то одного изменения
+final class SnapshotView<V> {
+    // блок - 512 соседних id
+    private static final int CHUNK_BITS = 9;
+    private static final VarHandle VALUES;
+
+    static {
+        try {
+            VALUES = MethodHandles.lookup().findVarHandle(SnapshotView.class, "values", Values.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Map<Long, V> map;
+    private volatile Values<V> values = new Values<>(new long[0], new Chunk[0], new int[0]);
+
+    SnapshotView(Map<Long, V> map) {
+        this.map = map;
+    }
+
+    // прежнее значение из карты
+    V put(long id, V value) {
+        V previous = map.put(id, value);
+        long key = id >>> CHUNK_BITS;
+        while (true) {
+            Values<V> current = values;
+            int index = Arrays.binarySearch(current.keys, key);
+            Values<V> updated = index < 0
+                    ? current.insertChunk(-index - 1, key, new Chunk(new long[]{id}, new Object[]{value}))
+                    : current.replaceChunk(index, current.chunks[index].put(id, value));
+            if (VALUES.compareAndSet(this, current, updated))
+                return previous;
+        }
+    }
+
+    // удалённое из карты значение или null
+    V remove(long id) {
+        V removed = map.remove(id);
+        if (removed == null)
+            return null;
+        while (true) {
+            Values<V> current = values;
+            int index = Arrays.binarySearch(current.keys, id >>> CHUNK_BITS);
+            Chunk chunk = current.chunks[index].remove(id);
+            Values<V> updated = chunk.ids.length == 0 ? current.removeChunk(index) : current.replaceChunk(index, chunk);
+            if (VALUES.compareAndSet(this, current, updated))
+                return removed;
+        }
+    }
+
+    List<V> get() {
+        return values;
+    }
+
+    // отсортированные id блока и значения под теми же индексами
+    private record Chunk(long[] ids, Object[] values) {
+
+        Chunk put(long id, Object value) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index >= 0) {
+                Object[] replaced = values.clone();
+                replaced[index] = value;
+                return new Chunk(ids, replaced);
+            }
+            int at = -index - 1;
+            long[] newIds = new long[ids.length + 1];
+            Object[] newValues = new Object[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, at);
+            System.arraycopy(values, 0, newValues, 0, at);
+            newIds[at] = id;
+            newValues[at] = value;
+            System.arraycopy(ids, at, newIds, at + 1, ids.length - at);
+            System.arraycopy(values, at, newValues, at + 1, ids.length - at);
+            return new Chunk(newIds, newValues);
+        }
+
+        // id есть в блоке: значение есть в карте
+        Chunk remove(long id) {
+            int index = Arrays.binarySearch(ids, id);
+            long[] newIds = new long[ids.length - 1];
+            Object[] newValues = new Object[ids.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(ids, index + 1, newIds, index, ids.length - index - 1);
+            System.arraycopy(values, index + 1, newValues, index, ids.length - index - 1);
+            return new Chunk(newIds, newValues);
+        }
+    }
+
+    // оглавление: номера блоков по возрастанию, сами блоки и число значений до конца каждого блока
+    private static final class Values<V> extends AbstractList<V> implements RandomAccess {
+        private final long[] keys;
+        private final Chunk[] chunks;
+        private final int[] ends;
+
+        Values(long[] keys, Chunk[] chunks, int[] ends) {
+            this.keys = keys;
+            this.chunks = chunks;
+            this.ends = ends;
+        }
+
+        Values<V> replaceChunk(int index, Chunk chunk) {
+            Chunk[] newChunks = chunks.clone();
+            newChunks[index] = chunk;
+            int delta = chunk.ids.length - chunks[index].ids.length;
+            if (delta == 0)
+                return new Values<>(keys, newChunks, ends);
+            int[] newEnds = ends.clone();
+            for (int i = index; i < newEnds.length; i++) {
+                newEnds[i] += delta;
+            }
+            return new Values<>(keys, newChunks, newEnds);
+        }
+
+        Values<V> insertChunk(int index, long key, Chunk chunk) {
+            long[] newKeys = new long[keys.length + 1];
+            Chunk[] newChunks = new Chunk[chunks.length + 1];
+            int[] newEnds = new int[ends.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(chunks, 0, newChunks, 0, index);
+            System.arraycopy(ends, 0, newEnds, 0, index);
+            newKeys[index] = key;
+            newChunks[index] = chunk;
+            newEnds[index] = (index == 0 ? 0 : ends[index - 1]) + chunk.ids.length;
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(chunks, index, newChunks, index + 1, chunks.length - index);
+            for (int i = index; i < ends.length; i++) {
+                newEnds[i + 1] = ends[i] + chunk.ids.length;
+            }
+            return new Values<>(newKeys, newChunks, newEnds);
+        }
+
+        // удаляется опустевший блок: до конца остальных блоков значений столько же
+        Values<V> removeChunk(int index) {
+            long[] newKeys = new long[keys.length - 1];
+            Chunk[] newChunks = new Chunk[chunks.length - 1];
+            int[] newEnds = new int[ends.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(chunks, 0, newChunks, 0, index);
+            System.arraycopy(ends, 0, newEnds, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(chunks, index + 1, newChunks, index, chunks.length - index - 1);
+            for (int i = index + 1; i < ends.length; i++) {
+                newEnds[i - 1] = ends[i] - 1;
+            }
+            return new Values<>(newKeys, newChunks, newEnds);
+        }
+
+        @Override
+        public int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(int index) {
+            if (index < 0 || index >= size())
+                throw new IndexOutOfBoundsException(index);
+            // первый блок, который кончается дальше index; пустых блоков нет, концы различны
+            int chunk = Arrays.binarySearch(ends, index + 1);
+            if (chunk < 0)
+                chunk = -chunk - 1;
+            int start = chunk == 0 ? 0 : ends[chunk - 1];
+            return (V) chunks[chunk].values[index - start];
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new Iterator<>() {
+                private int chunk;
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return chunk < chunks.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    Object[] current = chunks[chunk].values;
+                    V value = (V) current[position++];
+                    if (position == current.length) {
+                        chunk++;
+                        position = 0;
+                    }
+                    return value;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+// общие для всех хранилищ проверки сохраняемых объектов
+public final class StorageValidator {
+    private static final LocalDate FIRST_FILM_DATE = LocalDate.of(1895, 12, 28);
+
+    private StorageValidator() {
+    }
+
+    public static void validateFilm(Film film) {
+        // проверяем выполнение необходимых условий
+        if (film.getDescription() != null && film.getDescription().length() > 200)
+            throw new ValidationException("Максимальная длина описания — 200 символов");
+        if (film.getName() == null || film.getName().isBlank())
+            throw new ValidationException("Название не может быть пустым");
+        if (film.getReleaseDate() == null || film.getReleaseDate().isBefore(FIRST_FILM_DATE))
+            throw new ValidationException("Дата релиза — не раньше 28 декабря 1895 года");
+        if (film.getDuration() == null || film.getDuration() <= 0)
+            throw new ValidationException("Продолжительность фильма должна быть положительным числом");
+    }
+
+    public static void validateUser(User user) {
+        // проверяем выполнение необходимых условий
+        if (user.getEmail() == null || user.getEmail().isEmpty() || !user.getEmail().contains("@"))
+            throw new ValidationException("Электронная почта не может быть пустой и должна содержать символ @");
+        if (user.getLogin() == null || user.getLogin().contains(" ") || user.getLogin().isBlank())
+            throw new ValidationException("Логин не может быть пустым и содержать пробелы");
+        if (user.getBirthday() == null || user.getBirthday().isAfter(LocalDate.now()))
+            throw new ValidationException("Дата рождения не может быть в будущем.");
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// набор блокировок, между которыми распределяются id объектов хранилища.
+// изменения одного объекта выполняются последовательно, а разных - в основном параллельно,
+// без одной общей блокировки на всё хранилище
+public class StripedLocks {
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final Lock[] locks;
+
+    public StripedLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public StripedLocks(int stripes) {
+        locks = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public Lock get(long id) {
+        return locks[index(id)];
+    }
+
+    // блокировки двух объектов всегда берутся в порядке номеров, чтобы встречные операции
+    // над одной парой не заблокировали друг друга; если оба id попали в одну блокировку, она одна
+    public List<Lock> getPair(long first, long second) {
+        int firstIndex = index(first);
+        int secondIndex = index(second);
+        if (firstIndex == secondIndex)
+            return List.of(locks[firstIndex]);
+        return List.of(locks[Math.min(firstIndex, secondIndex)], locks[Math.max(firstIndex, secondIndex)]);
+    }
+
+    // каждая блокировка берётся и сразу отпускается по очереди: всё, что начато под любой из них
+    // до вызова, к возврату закончено, а начатое после видит записанное до вызова
+    public void passAll() {
+        for (Lock lock : locks) {
+            lock.lock();
+            lock.unlock();
+        }
+    }
+
+    private int index(long id) {
+        // перемешиваем биты, чтобы соседние id попадали в разные блокировки
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 32) % locks.length);
+    }
+}
@@ -1,9 +1,16 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserStorage {
     User create(User user);
@@ -14,5 +21,56 @@ public interface UserStorage {
 
     Collection<User> findAll();
 
+    // страница из limit объектов с id больше afterId, по возрастанию id
+    List<User> findPage(long afterId, int limit);
+
     Optional<User> findById(Long id);
+
+    // найденные пользователи в порядке ids одной массовой операцией;
+    // несуществующие id (например, удалённые параллельно) пропускаются
+    List<User> findAllByIds(Collection<Long> ids);
+
+    long count();
+
+    // количество пар друзей, каждая дружба считается один раз
+    long countFriendships();
+
+    // дружба симметрична: обе стороны меняются одной операцией,
+    // результат - изменилось ли что-нибудь
+    boolean link(Long userId, Long friendId);
+
+    boolean unlink(Long userId, Long friendId);
+
+    // общие друзья двух пользователей по возрастанию id
+    List<User> findCommonFriends(Long userId, Long otherId);
+
+    int countCommonFriends(Long userId, Long otherId);
+
+    // пакетные операции: результат по каждому элементу в порядке элементов.
+    // по умолчанию элементы выполняются по одному, хранилища заменяют это массовыми изменениями
+    default List<User> createAll(List<User> users) {
+        return users.stream().map(this::create).toList();
+    }
+
+    default List<BatchStatus> linkAll(List<Friendship> friendships) {
+        List<BatchStatus> statuses = new ArrayList<>(friendships.size());
+        for (Friendship friendship : friendships) {
+            try {
+                statuses.add(link(friendship.userId(), friendship.friendId()) ? BatchStatus.OK : BatchStatus.UNCHANGED);
+            } catch (NotFoundException e) {
+                statuses.add(BatchStatus.NOT_FOUND);
+            }
+        }
+        return statuses;
+    }
+
+    // какие из переданных id принадлежат существующим пользователям
+    default Set<Long> findExistingIds(Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        for (Long id : ids) {
+            if (findById(id).isPresent())
+                existing.add(id);
+        }
+        return existing;
+    }
 }
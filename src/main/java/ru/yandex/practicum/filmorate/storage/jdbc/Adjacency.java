@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage.jdbc;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import ru.yandex.practicum.filmorate.model.IdSet;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// загрузка связей (лайков или друзей) одним запросом, сгруппированных по владельцу.
+// запрос должен вернуть пары (владелец, id) отсортированными по владельцу: тогда id одного владельца
+// идут подряд и сразу складываются в массив для IdSet, без промежуточных коллекций Long
+final class Adjacency implements RowCallbackHandler {
+    private final Map<Long, IdSet> result = new HashMap<>();
+    private long owner;
+    private long[] ids = new long[16];
+    private int size;
+
+    private Adjacency() {
+    }
+
+    static Map<Long, IdSet> load(NamedParameterJdbcTemplate jdbc, String sql, SqlParameterSource params) {
+        Adjacency adjacency = new Adjacency();
+        jdbc.query(sql, params, adjacency);
+        adjacency.flush();
+        return adjacency.result;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        long current = rs.getLong(1);
+        if (size > 0 && current != owner)
+            flush();
+        owner = current;
+        if (size == ids.length)
+            ids = Arrays.copyOf(ids, size * 2);
+        ids[size++] = rs.getLong(2);
+    }
+
+    private void flush() {
+        if (size > 0)
+            result.put(owner, new IdSet(Arrays.copyOf(ids, size)));
+        size = 0;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.storage.jdbc;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// запросы по многим id: один запрос на каждую тысячу различных id
+final class ExistingIds {
+    // ограничивает число параметров в одном запросе
+    private static final int CHUNK = 1000;
+
+    private ExistingIds() {
+    }
+
+    // table - имя таблицы из кода хранилища, не из запроса клиента
+    static Set<Long> find(NamedParameterJdbcTemplate jdbc, String table, Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> chunk : chunks(ids)) {
+            existing.addAll(jdbc.queryForList("SELECT id FROM " + table + " WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk), Long.class));
+        }
+        return existing;
+    }
+
+    // различные id, разбитые на части для условия IN
+    static List<List<Long>> chunks(Collection<Long> ids) {
+        List<Long> unique = new ArrayList<>(new HashSet<>(ids));
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < unique.size(); from += CHUNK) {
+            chunks.add(unique.subList(from, Math.min(from + CHUNK, unique.size())));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,204 @@
+package ru.yandex.practicum.filmorate.storage.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// изменения лайков и дружбы в базе данных, собранные в пачки.
+// вызовы из разных потоков копятся в очереди, отдельный поток выполняет их пачкой JDBC batch-запросов
+// в одной транзакции: на всю пачку один обмен с базой на каждый вид изменения и один commit.
+// вызывающий ждёт, пока транзакция его пачки завершится, и получает, изменилось ли что-нибудь
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "jdbc")
+@Slf4j
+public class JdbcBatchWriter implements Closeable {
+    private static final int MAX_BATCH = 1000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transaction;
+    private final BlockingQueue<Mutation> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    public JdbcBatchWriter(NamedParameterJdbcTemplate jdbc, TransactionTemplate transaction) {
+        this.jdbc = jdbc;
+        this.transaction = transaction;
+        writer = Thread.ofPlatform().name("jdbc-batch-writer").daemon().start(this::writeLoop);
+    }
+
+    // возвращает true, если строка добавлена или удалена
+    boolean execute(Kind kind, long first, long second) {
+        return join(submit(kind, first, second));
+    }
+
+    // постановка изменения в очередь без ожидания: так пакетная операция ставит все свои
+    // изменения сразу, и они уходят в базу общими пачками
+    CompletableFuture<Boolean> submit(Kind kind, long first, long second) {
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        queue.add(new Mutation(kind, first, second, done));
+        return done;
+    }
+
+    static boolean join(CompletableFuture<Boolean> done) {
+        try {
+            return done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        queue.add(Mutation.STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Mutation> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                int stop = batch.indexOf(Mutation.STOP);
+                if (stop >= 0) {
+                    write(batch.subList(0, stop));
+                    return;
+                }
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<Mutation> mutations) {
+        if (mutations.isEmpty())
+            return;
+        try {
+            boolean[] changed = transaction.execute(status -> apply(mutations));
+            for (int i = 0; i < mutations.size(); i++) {
+                mutations.get(i).done().complete(changed[i]);
+            }
+        } catch (DataAccessException e) {
+            // одно неудачное изменение (например, пользователь удалён параллельно) откатывает всю пачку;
+            // повторяем по одному, чтобы ошибку получил только его вызывающий
+            log.debug("Пачка из {} изменений не записана, повтор по одному", mutations.size(), e);
+            for (Mutation mutation : mutations) {
+                try {
+                    boolean[] changed = transaction.execute(status -> apply(List.of(mutation)));
+                    mutation.done().complete(changed[0]);
+                } catch (RuntimeException single) {
+                    mutation.done().completeExceptionally(single);
+                }
+            }
+        } catch (RuntimeException e) {
+            mutations.forEach(mutation -> mutation.done().completeExceptionally(e));
+        }
+    }
+
+    // изменения одного вида подряд уходят одним batch-запросом; порядок изменений сохраняется,
+    // поэтому лайк и его снятие в одной пачке дают тот же результат, что и по отдельности
+    private boolean[] apply(List<Mutation> mutations) {
+        boolean[] changed = new boolean[mutations.size()];
+        // сдвиг счётчика лайков по фильмам и число изменений фильмов и пользователей для их версий,
+        // в порядке id, чтобы параллельные транзакции блокировали строки в одном порядке
+        Map<Long, Integer> likeDeltas = new TreeMap<>();
+        Map<Long, Integer> filmChanges = new TreeMap<>();
+        Map<Long, Integer> userChanges = new TreeMap<>();
+        int from = 0;
+        while (from < mutations.size()) {
+            Kind kind = mutations.get(from).kind();
+            int to = from;
+            List<SqlParameterSource> rows = new ArrayList<>();
+            while (to < mutations.size() && mutations.get(to).kind() == kind) {
+                Mutation mutation = mutations.get(to++);
+                rows.add(row(mutation.first(), mutation.second()));
+                // дружба хранится двумя строками
+                if (kind.symmetric)
+                    rows.add(row(mutation.second(), mutation.first()));
+            }
+            int[] counts = jdbc.batchUpdate(kind.sql, rows.toArray(SqlParameterSource[]::new));
+            int row = 0;
+            for (int i = from; i < to; i++) {
+                changed[i] = counts[row++] > 0;
+                if (kind.symmetric)
+                    changed[i] |= counts[row++] > 0;
+                if (!changed[i])
+                    continue;
+                Mutation mutation = mutations.get(i);
+                if (kind.likeDelta != 0) {
+                    likeDeltas.merge(mutation.first(), kind.likeDelta, Integer::sum);
+                    filmChanges.merge(mutation.first(), 1, Integer::sum);
+                } else {
+                    userChanges.merge(mutation.first(), 1, Integer::sum);
+                    userChanges.merge(mutation.second(), 1, Integer::sum);
+                }
+            }
+            from = to;
+        }
+        List<SqlParameterSource> films = new ArrayList<>();
+        filmChanges.forEach((filmId, changes) -> films.add(new MapSqlParameterSource("id", filmId)
+                .addValue("delta", likeDeltas.get(filmId))
+                .addValue("changes", changes)));
+        if (!films.isEmpty())
+            jdbc.batchUpdate("UPDATE films SET likes_count = likes_count + :delta, version = version + :changes "
+                    + "WHERE id = :id", films.toArray(SqlParameterSource[]::new));
+        List<SqlParameterSource> users = new ArrayList<>();
+        userChanges.forEach((userId, changes) -> users.add(new MapSqlParameterSource("id", userId)
+                .addValue("changes", changes)));
+        if (!users.isEmpty())
+            jdbc.batchUpdate("UPDATE users SET version = version + :changes WHERE id = :id",
+                    users.toArray(SqlParameterSource[]::new));
+        return changed;
+    }
+
+    private static SqlParameterSource row(long first, long second) {
+        return new MapSqlParameterSource("first", first).addValue("second", second);
+    }
+
+    enum Kind {
+        // строка добавляется, только если её ещё нет и фильм существует
+        LIKE_ADD("INSERT INTO likes (film_id, user_id) SELECT id, :second FROM films WHERE id = :first "
+                + "AND NOT EXISTS (SELECT 1 FROM likes WHERE film_id = :first AND user_id = :second)", false, 1),
+        LIKE_REMOVE("DELETE FROM likes WHERE film_id = :first AND user_id = :second", false, -1),
+        FRIEND_LINK("INSERT INTO friendships (user_id, friend_id) SELECT u.id, f.id FROM users u "
+                + "JOIN users f ON f.id = :second WHERE u.id = :first "
+                + "AND NOT EXISTS (SELECT 1 FROM friendships WHERE user_id = :first AND friend_id = :second)", true, 0),
+        FRIEND_UNLINK("DELETE FROM friendships WHERE user_id = :first AND friend_id = :second", true, 0);
+
+        private final String sql;
+        private final boolean symmetric;
+        private final int likeDelta;
+
+        Kind(String sql, boolean symmetric, int likeDelta) {
+            this.sql = sql;
+            this.symmetric = symmetric;
+            this.likeDelta = likeDelta;
+        }
+    }
+
+    private record Mutation(Kind kind, long first, long second, CompletableFuture<Boolean> done) {
+        static final Mutation STOP = new Mutation(null, 0, 0, new CompletableFuture<>());
+    }
+}
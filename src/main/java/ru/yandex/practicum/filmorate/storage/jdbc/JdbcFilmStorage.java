@@ -0,0 +1,347 @@
+package ru.yandex.practicum.filmorate.storage.jdbc;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.StorageValidator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+// хранилище фильмов в базе данных. лайки лежат в отдельной таблице likes,
+// число лайков дублируется в films.likes_count, поэтому топ фильмов - один запрос по индексу
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "jdbc")
+@RequiredArgsConstructor
+@Slf4j
+public class JdbcFilmStorage implements FilmStorage {
+    private static final String SELECT_FILMS = "SELECT id, name, description, release_date, duration, version FROM films ";
+    private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration) "
+            + "VALUES (:name, :description, :releaseDate, :duration)";
+    private static final RowMapper<Film> FILM_MAPPER = (rs, rowNum) -> {
+        Film film = new Film();
+        film.setId(rs.getLong("id"));
+        film.setName(rs.getString("name"));
+        film.setDescription(rs.getString("description"));
+        film.setReleaseDate(rs.getDate("release_date").toLocalDate());
+        film.setDuration(rs.getInt("duration"));
+        film.setVersion(rs.getLong("version"));
+        return film;
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transaction;
+    private final JdbcBatchWriter batchWriter;
+
+    @Override
+    public Film create(Film film) {
+        StorageValidator.validateFilm(film);
+        IdSet likes = film.getLikes() == null ? new IdSet() : film.getLikes();
+        transaction.executeWithoutResult(status -> {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbc.update(INSERT_FILM, params(film), keyHolder, new String[]{"id"});
+            film.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+            film.setLikes(insertLikes(film.getId(), likes));
+        });
+        log.debug("Создан фильм id={}", film.getId());
+        return film;
+    }
+
+    // все фильмы вставляются одним batch-запросом в одной транзакции
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        films.forEach(StorageValidator::validateFilm);
+        if (films.isEmpty())
+            return films;
+        transaction.executeWithoutResult(status -> {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbc.batchUpdate(INSERT_FILM, films.stream().map(JdbcFilmStorage::params).toArray(SqlParameterSource[]::new),
+                    keyHolder, new String[]{"id"});
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < films.size(); i++) {
+                Film film = films.get(i);
+                film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+                film.setLikes(film.getLikes() == null ? new IdSet() : insertLikes(film.getId(), film.getLikes()));
+            }
+        });
+        log.info("Создано фильмов: {}", films.size());
+        return films;
+    }
+
+    // загрузка фильмов с уже назначенными id пачкой (перенос данных, предзагрузка);
+    // пользователи из лайков должны быть уже загружены
+    public void restoreAll(Collection<Film> films) {
+        if (films.isEmpty())
+            return;
+        transaction.executeWithoutResult(status -> {
+            jdbc.batchUpdate("INSERT INTO films (id, name, description, release_date, duration, likes_count) "
+                            + "VALUES (:id, :name, :description, :releaseDate, :duration, :likesCount)",
+                    films.stream().map(JdbcFilmStorage::params).toArray(SqlParameterSource[]::new));
+            List<SqlParameterSource> likes = new ArrayList<>();
+            for (Film film : films) {
+                for (long userId : film.getLikes().snapshot()) {
+                    likes.add(new MapSqlParameterSource("filmId", film.getId()).addValue("userId", userId));
+                }
+            }
+            jdbc.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (:filmId, :userId)",
+                    likes.toArray(SqlParameterSource[]::new));
+            // следующий созданный фильм получит id больше загруженных
+            long lastId = jdbc.queryForObject("SELECT MAX(id) FROM films", EmptySqlParameterSource.INSTANCE, Long.class);
+            jdbc.getJdbcTemplate().execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (lastId + 1));
+        });
+    }
+
+    @Override
+    public Film update(Film newFilm) {
+        if (newFilm.getId() == null || newFilm.getId() <= 0) {
+            log.warn("Ошибка валидации фильма: некорректный id={}", newFilm.getId());
+            throw new ValidationException("id должен быть > 0");
+        }
+        StorageValidator.validateFilm(newFilm);
+        // незаполненные поля сохраняют прежние значения
+        int updated = jdbc.update("UPDATE films SET name = COALESCE(:name, name), "
+                + "description = COALESCE(:description, description), "
+                + "release_date = COALESCE(:releaseDate, release_date), "
+                + "duration = COALESCE(:duration, duration), version = version + 1 WHERE id = :id", params(newFilm));
+        if (updated == 0)
+            throw notFound(newFilm.getId());
+        log.debug("Обновлён фильм id={}", newFilm.getId());
+        return findById(newFilm.getId()).orElseThrow(() -> notFound(newFilm.getId()));
+    }
+
+    @Override
+    public void delete(Long id) {
+        // лайки удаляются каскадно
+        jdbc.update("DELETE FROM films WHERE id = :id", new MapSqlParameterSource("id", id));
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        List<Film> films = jdbc.query(SELECT_FILMS + "ORDER BY id", FILM_MAPPER);
+        return withLikes(films, Adjacency.load(jdbc, "SELECT film_id, user_id FROM likes ORDER BY film_id",
+                EmptySqlParameterSource.INSTANCE));
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        List<Film> films = jdbc.query(SELECT_FILMS + "WHERE id > :after ORDER BY id LIMIT :limit",
+                new MapSqlParameterSource("after", afterId).addValue("limit", limit), FILM_MAPPER);
+        if (films.isEmpty())
+            return films;
+        // страница - непрерывный отрезок id, лайки для неё берутся по диапазону первичного ключа
+        return withLikes(films, Adjacency.load(jdbc,
+                "SELECT film_id, user_id FROM likes WHERE film_id BETWEEN :from AND :to ORDER BY film_id",
+                new MapSqlParameterSource("from", films.getFirst().getId())
+                        .addValue("to", films.getLast().getId())));
+    }
+
+    @Override
+    public Optional<Film> findById(Long id) {
+        List<Film> films = jdbc.query(SELECT_FILMS + "WHERE id = :id", new MapSqlParameterSource("id", id),
+                FILM_MAPPER);
+        return withLikes(films).stream().findFirst();
+    }
+
+    // на каждую тысячу id два запроса: фильмы и их лайки
+    @Override
+    public List<Film> findAllByIds(Collection<Long> ids) {
+        Map<Long, Film> found = new HashMap<>();
+        for (List<Long> chunk : ExistingIds.chunks(ids)) {
+            List<Film> films = jdbc.query(SELECT_FILMS + "WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk), FILM_MAPPER);
+            withLikes(films).forEach(film -> found.put(film.getId(), film));
+        }
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    // обратный индекс лайков - индекс idx_likes_user
+    @Override
+    public long[] findLikedFilmIds(Long userId) {
+        return jdbc.queryForList("SELECT film_id FROM likes WHERE user_id = :id ORDER BY film_id",
+                new MapSqlParameterSource("id", userId), Long.class).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public Map<Long, long[]> findLikedFilmIds(Collection<Long> userIds) {
+        Map<Long, long[]> result = new HashMap<>();
+        for (List<Long> chunk : ExistingIds.chunks(userIds)) {
+            Adjacency.load(jdbc, "SELECT user_id, film_id FROM likes WHERE user_id IN (:ids) ORDER BY user_id",
+                            new MapSqlParameterSource("ids", chunk))
+                    .forEach((userId, films) -> result.put(userId, films.snapshot()));
+        }
+        return result;
+    }
+
+    @Override
+    public long count() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM films", EmptySqlParameterSource.INSTANCE, Long.class);
+    }
+
+    @Override
+    public long countLikes() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM likes", EmptySqlParameterSource.INSTANCE, Long.class);
+    }
+
+    @Override
+    public int countLikes(Long filmId) {
+        List<Integer> counts = jdbc.queryForList("SELECT likes_count FROM films WHERE id = :id",
+                new MapSqlParameterSource("id", filmId), Integer.class);
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        boolean changed = batchWriter.execute(JdbcBatchWriter.Kind.LIKE_ADD, filmId, userId);
+        // лайк не добавлен: он уже был или фильма нет
+        if (!changed)
+            requireExists(filmId);
+        return changed;
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        boolean changed = batchWriter.execute(JdbcBatchWriter.Kind.LIKE_REMOVE, filmId, userId);
+        if (!changed)
+            requireExists(filmId);
+        return changed;
+    }
+
+    // лайки пользователя находятся по индексу idx_likes_user и блокируются до конца транзакции;
+    // удаляются и вычитаются из счётчиков ровно эти строки, так что лайк, вставший после выборки,
+    // остаётся вместе со своим счётчиком до следующего вызова
+    @Override
+    public long[] removeLikesOf(Long userId) {
+        long[] changed = transaction.execute(status -> {
+            List<Long> liked = jdbc.queryForList(
+                    "SELECT film_id FROM likes WHERE user_id = :id ORDER BY film_id FOR UPDATE",
+                    new MapSqlParameterSource("id", userId), Long.class);
+            for (List<Long> chunk : ExistingIds.chunks(liked)) {
+                MapSqlParameterSource params = new MapSqlParameterSource("id", userId).addValue("ids", chunk);
+                jdbc.update("DELETE FROM likes WHERE user_id = :id AND film_id IN (:ids)", params);
+                jdbc.update("UPDATE films SET likes_count = likes_count - 1, version = version + 1 "
+                        + "WHERE id IN (:ids)", params);
+            }
+            return liked.stream().mapToLong(Long::longValue).toArray();
+        });
+        return changed;
+    }
+
+    // все лайки ставятся в очередь сразу и уходят в базу общими пачками
+    @Override
+    public List<BatchStatus> addLikes(List<Like> likes) {
+        List<CompletableFuture<Boolean>> done = likes.stream()
+                .map(like -> batchWriter.submit(JdbcBatchWriter.Kind.LIKE_ADD, like.filmId(), like.userId()))
+                .toList();
+        List<BatchStatus> statuses = new ArrayList<>(likes.size());
+        List<Long> unchangedFilms = new ArrayList<>();
+        for (int i = 0; i < likes.size(); i++) {
+            try {
+                boolean changed = JdbcBatchWriter.join(done.get(i));
+                statuses.add(changed ? BatchStatus.OK : BatchStatus.UNCHANGED);
+                if (!changed)
+                    unchangedFilms.add(likes.get(i).filmId());
+            } catch (DataIntegrityViolationException e) {
+                // пользователь удалён, пока лайк стоял в очереди
+                statuses.add(BatchStatus.NOT_FOUND);
+            }
+        }
+        // лайк не добавлен: он уже был или фильма нет
+        if (!unchangedFilms.isEmpty()) {
+            Set<Long> existing = ExistingIds.find(jdbc, "films", unchangedFilms);
+            for (int i = 0; i < likes.size(); i++) {
+                if (statuses.get(i) == BatchStatus.UNCHANGED && !existing.contains(likes.get(i).filmId()))
+                    statuses.set(i, BatchStatus.NOT_FOUND);
+            }
+        }
+        return statuses;
+    }
+
+    @Override
+    public List<Film> getPopular(int count) {
+        List<Film> films = jdbc.query(SELECT_FILMS + "ORDER BY likes_count DESC, id LIMIT :count",
+                new MapSqlParameterSource("count", count), FILM_MAPPER);
+        return withLikes(films);
+    }
+
+    private List<Film> withLikes(List<Film> films) {
+        if (films.isEmpty())
+            return films;
+        return withLikes(films, Adjacency.load(jdbc,
+                "SELECT film_id, user_id FROM likes WHERE film_id IN (:ids) ORDER BY film_id",
+                new MapSqlParameterSource("ids", films.stream().map(Film::getId).toList())));
+    }
+
+    private static List<Film> withLikes(List<Film> films, Map<Long, IdSet> likes) {
+        for (Film film : films) {
+            IdSet filmLikes = likes.get(film.getId());
+            film.setLikes(filmLikes == null ? new IdSet() : filmLikes);
+        }
+        return films;
+    }
+
+    // лайки нового фильма: сохраняются только лайки существующих пользователей
+    private IdSet insertLikes(long filmId, IdSet likes) {
+        long[] userIds = likes.snapshot();
+        if (userIds.length == 0)
+            return new IdSet();
+        SqlParameterSource[] rows = new SqlParameterSource[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            rows[i] = new MapSqlParameterSource("filmId", filmId).addValue("userId", userIds[i]);
+        }
+        int[] counts = jdbc.batchUpdate("INSERT INTO likes (film_id, user_id) SELECT :filmId, id FROM users "
+                + "WHERE id = :userId", rows);
+        IdSet inserted = new IdSet();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0)
+                inserted.add(userIds[i]);
+        }
+        jdbc.update("UPDATE films SET likes_count = :likesCount WHERE id = :id",
+                new MapSqlParameterSource("id", filmId).addValue("likesCount", inserted.size()));
+        return inserted;
+    }
+
+    private void requireExists(Long id) {
+        Integer found = jdbc.queryForObject("SELECT COUNT(*) FROM films WHERE id = :id",
+                new MapSqlParameterSource("id", id), Integer.class);
+        if (found == null || found == 0)
+            throw notFound(id);
+    }
+
+    private NotFoundException notFound(Long id) {
+        log.debug("Фильм не найден с id: {}", id);
+        return new NotFoundException("Фильм с id=" + id + " не найден");
+    }
+
+    private static MapSqlParameterSource params(Film film) {
+        return new MapSqlParameterSource("id", film.getId())
+                .addValue("name", film.getName())
+                .addValue("description", film.getDescription())
+                .addValue("releaseDate", film.getReleaseDate())
+                .addValue("duration", film.getDuration())
+                .addValue("likesCount", film.getLikes() == null ? 0 : film.getLikes().size());
+    }
+}
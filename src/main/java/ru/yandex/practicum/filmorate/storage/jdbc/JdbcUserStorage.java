@@ -0,0 +1,312 @@
+package ru.yandex.practicum.filmorate.storage.jdbc;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.StorageValidator;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+// хранилище пользователей в базе данных. дружба лежит в таблице friendships двумя строками,
+// общие друзья - одно соединение таблицы с собой по первичному ключу (user_id, friend_id)
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "jdbc")
+@RequiredArgsConstructor
+@Slf4j
+public class JdbcUserStorage implements UserStorage {
+    private static final String SELECT_USERS = "SELECT u.id, u.email, u.login, u.name, u.birthday, u.version FROM users u ";
+    private static final String INSERT_USER = "INSERT INTO users (email, login, name, birthday) "
+            + "VALUES (:email, :login, :name, :birthday)";
+    private static final RowMapper<User> USER_MAPPER = (rs, rowNum) -> {
+        User user = new User();
+        user.setId(rs.getLong("id"));
+        user.setEmail(rs.getString("email"));
+        user.setLogin(rs.getString("login"));
+        user.setName(rs.getString("name"));
+        user.setBirthday(rs.getDate("birthday").toLocalDate());
+        user.setVersion(rs.getLong("version"));
+        return user;
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transaction;
+    private final JdbcBatchWriter batchWriter;
+
+    @Override
+    public User create(User user) {
+        StorageValidator.validateUser(user);
+        if (user.getName() == null || user.getName().isBlank())
+            user.setName(user.getLogin());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(INSERT_USER, params(user), keyHolder, new String[]{"id"});
+        user.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        // друзья появляются только через link, чтобы обе стороны дружбы оставались согласованными
+        user.setFriends(new IdSet());
+        log.debug("Создан пользователь id={}", user.getId());
+        return user;
+    }
+
+    // все пользователи вставляются одним batch-запросом
+    @Override
+    public List<User> createAll(List<User> users) {
+        for (User user : users) {
+            StorageValidator.validateUser(user);
+            if (user.getName() == null || user.getName().isBlank())
+                user.setName(user.getLogin());
+        }
+        if (users.isEmpty())
+            return users;
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(INSERT_USER, users.stream().map(JdbcUserStorage::params).toArray(SqlParameterSource[]::new),
+                keyHolder, new String[]{"id"});
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            users.get(i).setFriends(new IdSet());
+        }
+        log.info("Создано пользователей: {}", users.size());
+        return users;
+    }
+
+    // загрузка пользователей с уже назначенными id пачкой (перенос данных, предзагрузка);
+    // друзья должны быть указаны с обеих сторон
+    public void restoreAll(Collection<User> users) {
+        if (users.isEmpty())
+            return;
+        transaction.executeWithoutResult(status -> {
+            jdbc.batchUpdate("INSERT INTO users (id, email, login, name, birthday) "
+                            + "VALUES (:id, :email, :login, :name, :birthday)",
+                    users.stream().map(JdbcUserStorage::params).toArray(SqlParameterSource[]::new));
+            List<SqlParameterSource> friendships = new ArrayList<>();
+            for (User user : users) {
+                for (long friendId : user.getFriends().snapshot()) {
+                    friendships.add(new MapSqlParameterSource("userId", user.getId()).addValue("friendId", friendId));
+                }
+            }
+            jdbc.batchUpdate("INSERT INTO friendships (user_id, friend_id) VALUES (:userId, :friendId)",
+                    friendships.toArray(SqlParameterSource[]::new));
+            // следующий созданный пользователь получит id больше загруженных
+            long lastId = jdbc.queryForObject("SELECT MAX(id) FROM users", EmptySqlParameterSource.INSTANCE, Long.class);
+            jdbc.getJdbcTemplate().execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (lastId + 1));
+        });
+    }
+
+    @Override
+    public User update(User newUser) {
+        if (newUser.getId() == null || newUser.getId() <= 0) {
+            log.warn("Ошибка валидации пользователя: некорректный id={}", newUser.getId());
+            throw new ValidationException("id должен быть > 0");
+        }
+        StorageValidator.validateUser(newUser);
+        // незаполненные поля сохраняют прежние значения, пустое имя заменяется логином
+        int updated = jdbc.update("UPDATE users SET email = COALESCE(NULLIF(:email, ''), email), "
+                + "login = COALESCE(:login, login), "
+                + "name = CASE WHEN :name IS NULL THEN name WHEN TRIM(:name) = '' THEN COALESCE(:login, login) "
+                + "ELSE :name END, "
+                + "birthday = COALESCE(:birthday, birthday), version = version + 1 WHERE id = :id", params(newUser));
+        if (updated == 0)
+            throw notFound(newUser.getId());
+        log.debug("Обновлён пользователь id={}", newUser.getId());
+        return findById(newUser.getId()).orElseThrow(() -> notFound(newUser.getId()));
+    }
+
+    @Override
+    public void delete(Long id) {
+        transaction.executeWithoutResult(status -> {
+            MapSqlParameterSource params = new MapSqlParameterSource("id", id);
+            // лайки и дружба удаляются каскадно, счётчики лайков фильмов уменьшаем заранее,
+            // версии фильмов и друзей сдвигаем, так как их списки лайков и друзей меняются
+            jdbc.update("UPDATE films SET likes_count = likes_count - 1, version = version + 1 "
+                    + "WHERE id IN (SELECT film_id FROM likes WHERE user_id = :id)", params);
+            jdbc.update("UPDATE users SET version = version + 1 "
+                    + "WHERE id IN (SELECT friend_id FROM friendships WHERE user_id = :id)", params);
+            jdbc.update("DELETE FROM users WHERE id = :id", params);
+        });
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        List<User> users = jdbc.query(SELECT_USERS + "ORDER BY u.id", USER_MAPPER);
+        return withFriends(users, Adjacency.load(jdbc,
+                "SELECT user_id, friend_id FROM friendships ORDER BY user_id", EmptySqlParameterSource.INSTANCE));
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        List<User> users = jdbc.query(SELECT_USERS + "WHERE u.id > :after ORDER BY u.id LIMIT :limit",
+                new MapSqlParameterSource("after", afterId).addValue("limit", limit), USER_MAPPER);
+        if (users.isEmpty())
+            return users;
+        return withFriends(users, Adjacency.load(jdbc,
+                "SELECT user_id, friend_id FROM friendships WHERE user_id BETWEEN :from AND :to ORDER BY user_id",
+                new MapSqlParameterSource("from", users.getFirst().getId())
+                        .addValue("to", users.getLast().getId())));
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        List<User> users = jdbc.query(SELECT_USERS + "WHERE u.id = :id", new MapSqlParameterSource("id", id),
+                USER_MAPPER);
+        return withFriends(users).stream().findFirst();
+    }
+
+    // на каждую тысячу id два запроса: пользователи и их друзья
+    @Override
+    public List<User> findAllByIds(Collection<Long> ids) {
+        Map<Long, User> found = new HashMap<>();
+        for (List<Long> chunk : ExistingIds.chunks(ids)) {
+            List<User> users = jdbc.query(SELECT_USERS + "WHERE u.id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk), USER_MAPPER);
+            withFriends(users).forEach(user -> found.put(user.getId(), user));
+        }
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public long count() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM users", EmptySqlParameterSource.INSTANCE, Long.class);
+    }
+
+    @Override
+    public long countFriendships() {
+        return jdbc.queryForObject("SELECT COUNT(*) / 2 FROM friendships", EmptySqlParameterSource.INSTANCE,
+                Long.class);
+    }
+
+    @Override
+    public boolean link(Long userId, Long friendId) {
+        boolean changed = batchWriter.execute(JdbcBatchWriter.Kind.FRIEND_LINK, userId, friendId);
+        // связь не добавлена: она уже была или кого-то из пользователей нет
+        if (!changed)
+            requireExist(userId, friendId);
+        return changed;
+    }
+
+    @Override
+    public boolean unlink(Long userId, Long friendId) {
+        boolean changed = batchWriter.execute(JdbcBatchWriter.Kind.FRIEND_UNLINK, userId, friendId);
+        if (!changed)
+            requireExist(userId, friendId);
+        return changed;
+    }
+
+    // все связи ставятся в очередь сразу и уходят в базу общими пачками
+    @Override
+    public List<BatchStatus> linkAll(List<Friendship> friendships) {
+        List<CompletableFuture<Boolean>> done = friendships.stream()
+                .map(friendship -> batchWriter.submit(JdbcBatchWriter.Kind.FRIEND_LINK,
+                        friendship.userId(), friendship.friendId()))
+                .toList();
+        List<BatchStatus> statuses = new ArrayList<>(friendships.size());
+        List<Long> unchangedUsers = new ArrayList<>();
+        for (int i = 0; i < friendships.size(); i++) {
+            try {
+                boolean changed = JdbcBatchWriter.join(done.get(i));
+                statuses.add(changed ? BatchStatus.OK : BatchStatus.UNCHANGED);
+                if (!changed) {
+                    unchangedUsers.add(friendships.get(i).userId());
+                    unchangedUsers.add(friendships.get(i).friendId());
+                }
+            } catch (DataIntegrityViolationException e) {
+                // пользователь удалён, пока связь стояла в очереди
+                statuses.add(BatchStatus.NOT_FOUND);
+            }
+        }
+        // связь не добавлена: она уже была или кого-то из пользователей нет
+        if (!unchangedUsers.isEmpty()) {
+            Set<Long> existing = findExistingIds(unchangedUsers);
+            for (int i = 0; i < friendships.size(); i++) {
+                Friendship friendship = friendships.get(i);
+                if (statuses.get(i) == BatchStatus.UNCHANGED
+                        && !(existing.contains(friendship.userId()) && existing.contains(friendship.friendId())))
+                    statuses.set(i, BatchStatus.NOT_FOUND);
+            }
+        }
+        return statuses;
+    }
+
+    @Override
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+        return ExistingIds.find(jdbc, "users", ids);
+    }
+
+    @Override
+    public List<User> findCommonFriends(Long userId, Long otherId) {
+        List<User> users = jdbc.query(SELECT_USERS
+                        + "JOIN friendships a ON a.friend_id = u.id AND a.user_id = :userId "
+                        + "JOIN friendships b ON b.friend_id = u.id AND b.user_id = :otherId ORDER BY u.id",
+                new MapSqlParameterSource("userId", userId).addValue("otherId", otherId), USER_MAPPER);
+        return withFriends(users);
+    }
+
+    @Override
+    public int countCommonFriends(Long userId, Long otherId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM friendships a "
+                        + "JOIN friendships b ON b.friend_id = a.friend_id AND b.user_id = :otherId "
+                        + "WHERE a.user_id = :userId",
+                new MapSqlParameterSource("userId", userId).addValue("otherId", otherId), Integer.class);
+    }
+
+    private List<User> withFriends(List<User> users) {
+        if (users.isEmpty())
+            return users;
+        return withFriends(users, Adjacency.load(jdbc,
+                "SELECT user_id, friend_id FROM friendships WHERE user_id IN (:ids) ORDER BY user_id",
+                new MapSqlParameterSource("ids", users.stream().map(User::getId).toList())));
+    }
+
+    private static List<User> withFriends(List<User> users, Map<Long, IdSet> friends) {
+        for (User user : users) {
+            IdSet userFriends = friends.get(user.getId());
+            user.setFriends(userFriends == null ? new IdSet() : userFriends);
+        }
+        return users;
+    }
+
+    private void requireExist(Long userId, Long friendId) {
+        List<Long> found = jdbc.queryForList("SELECT id FROM users WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", List.of(userId, friendId)), Long.class);
+        if (!found.contains(userId))
+            throw notFound(userId);
+        if (!found.contains(friendId))
+            throw notFound(friendId);
+    }
+
+    private NotFoundException notFound(Long id) {
+        log.debug("Пользователь не найден с id: {}", id);
+        return new NotFoundException("Пользователь с id=" + id + " не найден");
+    }
+
+    private static MapSqlParameterSource params(User user) {
+        return new MapSqlParameterSource("id", user.getId())
+                .addValue("email", user.getEmail())
+                .addValue("login", user.getLogin())
+                .addValue("name", user.getName())
+                .addValue("birthday", user.getBirthday());
+    }
+}
@@ -0,0 +1,6 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+// изменение хранилища в памяти; возвращает запись для журнала или null, если ничего не изменилось
+interface JournalChange {
+    byte[] apply();
+}
@@ -0,0 +1,241 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+// двоичный формат журнала и снимков.
+// запись журнала: [длина][crc32][тип][данные]; все события задают итоговое состояние
+// (фильм целиком, наличие лайка, наличие дружбы), поэтому их можно повторно применять поверх снимка,
+// снятого во время работы
+final class JournalCodec {
+    static final byte FILM_PUT = 1;
+    static final byte FILM_DELETE = 2;
+    static final byte LIKE_ADD = 3;
+    static final byte LIKE_REMOVE = 4;
+    static final byte USER_PUT = 5;
+    static final byte USER_DELETE = 6;
+    static final byte FRIEND_LINK = 7;
+    static final byte FRIEND_UNLINK = 8;
+
+    static final int HEADER_SIZE = 8;
+
+    private static final long NULL_DATE = Long.MIN_VALUE;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+
+    private JournalCodec() {
+    }
+
+    static byte[] filmPut(Film film) {
+        return record(FILM_PUT, out -> {
+            writeFilm(out, film);
+            out.writeLong(film.getVersion());
+        });
+    }
+
+    static byte[] userPut(User user) {
+        return record(USER_PUT, out -> {
+            writeUser(out, user);
+            out.writeLong(user.getVersion());
+        });
+    }
+
+    static byte[] delete(byte type, long id) {
+        return record(type, out -> out.writeLong(id));
+    }
+
+    static byte[] pair(byte type, long first, long second) {
+        return record(type, out -> {
+            out.writeLong(first);
+            out.writeLong(second);
+        });
+    }
+
+    // применение одной записи при восстановлении; события о несуществующих объектах пропускаются -
+    // объект был удалён позже либо создан одновременно с событием и придёт в журнале вместе с ним
+    static void apply(ByteBuffer in, InMemoryFilmStorage films, InMemoryUserStorage users) {
+        byte type = in.get();
+        switch (type) {
+            case FILM_PUT -> {
+                Film film = readFilm(in);
+                // в записях, сделанных до появления версий, её нет
+                if (in.hasRemaining())
+                    film.setVersion(in.getLong());
+                films.restore(film);
+            }
+            case FILM_DELETE -> {
+                // запись создания удалённого фильма могла не попасть в журнал, а id не должен выдаваться снова
+                long id = in.getLong();
+                films.observeId(id);
+                films.delete(id);
+            }
+            case LIKE_ADD, LIKE_REMOVE -> {
+                long filmId = in.getLong();
+                long userId = in.getLong();
+                if (films.findById(filmId).isEmpty())
+                    return;
+                if (type == LIKE_ADD) {
+                    films.addLike(filmId, userId);
+                } else {
+                    films.removeLike(filmId, userId);
+                }
+            }
+            case USER_PUT -> {
+                User user = readUser(in);
+                if (in.hasRemaining())
+                    user.setVersion(in.getLong());
+                users.restore(user);
+            }
+            case USER_DELETE -> {
+                long id = in.getLong();
+                users.observeId(id);
+                users.delete(id);
+            }
+            case FRIEND_LINK, FRIEND_UNLINK -> {
+                long userId = in.getLong();
+                long friendId = in.getLong();
+                // каждая сторона применяется отдельно: пользователь, созданный одновременно с дружбой,
+                // попадает в журнал позже неё и приносит свою сторону сам
+                users.restoreHalfLink(userId, friendId, type == FRIEND_LINK);
+                users.restoreHalfLink(friendId, userId, type == FRIEND_LINK);
+            }
+            default -> throw new IllegalStateException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    // очередная целая запись или null, если дальше пусто либо запись оборвана при сбое
+    static ByteBuffer nextRecord(ByteBuffer in) {
+        if (in.remaining() < HEADER_SIZE)
+            return null;
+        int length = in.getInt();
+        int checksum = in.getInt();
+        if (length <= 0 || length > in.remaining())
+            return null;
+        ByteBuffer body = in.slice(in.position(), length);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != checksum)
+            return null;
+        in.position(in.position() + length);
+        return body;
+    }
+
+    static void writeFilm(DataOutput out, Film film) throws IOException {
+        out.writeLong(film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        out.writeInt(film.getDuration() == null ? NULL_INT : film.getDuration());
+        writeIds(out, film.getLikes().snapshot());
+    }
+
+    static Film readFilm(ByteBuffer in) {
+        Film film = new Film();
+        film.setId(in.getLong());
+        film.setName(readString(in));
+        film.setDescription(readString(in));
+        film.setReleaseDate(readDate(in));
+        int duration = in.getInt();
+        film.setDuration(duration == NULL_INT ? null : duration);
+        film.setLikes(readIds(in));
+        return film;
+    }
+
+    static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeLong(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+        writeIds(out, user.getFriends().snapshot());
+    }
+
+    static User readUser(ByteBuffer in) {
+        User user = new User();
+        user.setId(in.getLong());
+        user.setEmail(readString(in));
+        user.setLogin(readString(in));
+        user.setName(readString(in));
+        user.setBirthday(readDate(in));
+        user.setFriends(readIds(in));
+        return user;
+    }
+
+    private static byte[] record(byte type, Writer writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            // место под заголовок заполняется после записи данных
+            out.writeLong(0);
+            out.writeByte(type);
+            writer.write(out);
+            byte[] record = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record, HEADER_SIZE, record.length - HEADER_SIZE);
+            ByteBuffer.wrap(record)
+                    .putInt(record.length - HEADER_SIZE)
+                    .putInt((int) crc.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeLong(date == null ? NULL_DATE : date.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static void writeIds(DataOutput out, long[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (long id : ids) {
+            out.writeLong(id);
+        }
+    }
+
+    private static IdSet readIds(ByteBuffer in) {
+        long[] ids = new long[in.getInt()];
+        in.asLongBuffer().get(ids);
+        in.position(in.position() + ids.length * Long.BYTES);
+        return new IdSet(ids);
+    }
+
+    interface Writer {
+        void write(DataOutput out) throws IOException;
+    }
+}
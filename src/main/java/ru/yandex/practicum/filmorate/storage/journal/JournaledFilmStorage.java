@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.Batches;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+
+// хранилище фильмов в памяти с записью каждого изменения в журнал.
+// чтение идёт только из памяти; изменение применяется и ставится в журнал под блокировкой фильма,
+// чтобы порядок событий одного фильма в журнале совпадал с порядком в памяти,
+// а ожидание записи на диск - уже после снятия блокировки.
+// после ошибки записи журнала изменения отклоняются до того, как поменять память
+@RequiredArgsConstructor
+public class JournaledFilmStorage implements FilmStorage {
+    private final InMemoryFilmStorage delegate;
+    private final StorageJournal journal;
+    private final StripedLocks locks = new StripedLocks();
+
+    @Override
+    public Film create(Film film) {
+        journal.checkWritable();
+        Film created = delegate.create(film);
+        CompletableFuture<Void> done = journaled(created.getId(), () -> currentPut(created.getId()));
+        StorageJournal.await(done);
+        return created;
+    }
+
+    @Override
+    public Film update(Film newFilm) {
+        Film[] updated = new Film[1];
+        CompletableFuture<Void> done = journaled(newFilm.getId(), () -> {
+            updated[0] = delegate.update(newFilm);
+            return JournalCodec.filmPut(updated[0]);
+        });
+        StorageJournal.await(done);
+        return updated[0];
+    }
+
+    @Override
+    public void delete(Long id) {
+        CompletableFuture<Void> done = journaled(id, () -> {
+            // удаление несуществующего id в журнал не пишется: повтор считает id удаления выданным
+            if (delegate.findById(id).isEmpty())
+                return null;
+            delegate.delete(id);
+            return JournalCodec.delete(JournalCodec.FILM_DELETE, id);
+        });
+        StorageJournal.await(done);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return likeChanged(filmId, userId, true);
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        return likeChanged(filmId, userId, false);
+    }
+
+    // каждый снятый лайк - отдельное событие журнала, ожидание записи - одно на все
+    @Override
+    public long[] removeLikesOf(Long userId) {
+        journal.checkWritable();
+        delegate.refuseLikesOf(userId);
+        long[] liked = delegate.findLikedFilmIds(userId);
+        long[] changed = new long[liked.length];
+        int size = 0;
+        List<CompletableFuture<Void>> done = new ArrayList<>(liked.length);
+        for (long filmId : liked) {
+            boolean[] removed = new boolean[1];
+            done.add(journaled(filmId, () -> {
+                // фильм мог быть удалён после чтения индекса
+                removed[0] = delegate.findById(filmId).isPresent() && delegate.removeLike(filmId, userId);
+                return removed[0] ? JournalCodec.pair(JournalCodec.LIKE_REMOVE, filmId, userId) : null;
+            }));
+            if (removed[0])
+                changed[size++] = filmId;
+        }
+        done.forEach(StorageJournal::await);
+        return Arrays.copyOf(changed, size);
+    }
+
+    // записи пачки ставятся в журнал без ожидания каждой, ожидание - в конце:
+    // пачка уходит на диск несколькими групповыми записями, а не fsync на каждый элемент
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        journal.checkWritable();
+        List<Film> created = delegate.createAll(films);
+        List<CompletableFuture<Void>> done = new ArrayList<>(created.size());
+        for (Film film : created) {
+            done.add(journaled(film.getId(), () -> currentPut(film.getId())));
+        }
+        done.forEach(StorageJournal::await);
+        return created;
+    }
+
+    @Override
+    public List<BatchStatus> addLikes(List<Like> likes) {
+        BatchStatus[] statuses = new BatchStatus[likes.size()];
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        Batches.indexesBy(likes, Like::filmId).forEach((filmId, indexes) -> {
+            Lock lock = locks.get(filmId);
+            lock.lock();
+            try {
+                journal.checkWritable();
+                List<BatchStatus> filmStatuses = delegate.addLikes(indexes.stream().map(likes::get).toList());
+                for (int k = 0; k < indexes.size(); k++) {
+                    int i = indexes.get(k);
+                    statuses[i] = filmStatuses.get(k);
+                    if (statuses[i] == BatchStatus.OK) {
+                        byte[] record = JournalCodec.pair(JournalCodec.LIKE_ADD, filmId, likes.get(i).userId());
+                        done.add(journal.append(record));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+        done.forEach(StorageJournal::await);
+        return Arrays.asList(statuses);
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public Optional<Film> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<Film> findAllByIds(Collection<Long> ids) {
+        return delegate.findAllByIds(ids);
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long[] findLikedFilmIds(Long userId) {
+        return delegate.findLikedFilmIds(userId);
+    }
+
+    @Override
+    public Map<Long, long[]> findLikedFilmIds(Collection<Long> userIds) {
+        return delegate.findLikedFilmIds(userIds);
+    }
+
+    @Override
+    public long countLikes() {
+        return delegate.countLikes();
+    }
+
+    @Override
+    public int countLikes(Long filmId) {
+        return delegate.countLikes(filmId);
+    }
+
+    @Override
+    public List<Film> getPopular(int count) {
+        return delegate.getPopular(count);
+    }
+
+    private boolean likeChanged(Long filmId, Long userId, boolean add) {
+        boolean[] changed = new boolean[1];
+        CompletableFuture<Void> done = journaled(filmId, () -> {
+            changed[0] = add ? delegate.addLike(filmId, userId) : delegate.removeLike(filmId, userId);
+            // повторный лайк ничего не меняет и в журнал не пишется
+            if (!changed[0])
+                return null;
+            return JournalCodec.pair(add ? JournalCodec.LIKE_ADD : JournalCodec.LIKE_REMOVE, filmId, userId);
+        });
+        StorageJournal.await(done);
+        return changed[0];
+    }
+
+    // созданный фильм пишется в журнал таким, какой он сейчас в памяти, а не каким его вернуло создание:
+    // лайки, поставленные до записи события, уже стоят в журнале раньше него, при восстановлении
+    // пропускаются и приходят вместе с фильмом. удалённый до записи фильм в журнал не попадает
+    private byte[] currentPut(long filmId) {
+        return delegate.findById(filmId).map(JournalCodec::filmPut).orElse(null);
+    }
+
+    private CompletableFuture<Void> journaled(long filmId, JournalChange change) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            journal.checkWritable();
+            byte[] record = change.apply();
+            return record == null ? CompletableFuture.completedFuture(null) : journal.append(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
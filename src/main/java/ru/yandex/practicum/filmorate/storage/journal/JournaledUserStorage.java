@@ -0,0 +1,178 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+
+// хранилище пользователей в памяти с записью каждого изменения в журнал, устроено как JournaledFilmStorage;
+// дружба меняется под блокировками обоих пользователей
+@RequiredArgsConstructor
+public class JournaledUserStorage implements UserStorage {
+    private final InMemoryUserStorage delegate;
+    private final StorageJournal journal;
+    private final StripedLocks locks = new StripedLocks();
+
+    @Override
+    public User create(User user) {
+        journal.checkWritable();
+        User created = delegate.create(user);
+        CompletableFuture<Void> done = journaled(List.of(locks.get(created.getId())),
+                () -> currentPut(created.getId()));
+        StorageJournal.await(done);
+        return created;
+    }
+
+    @Override
+    public User update(User newUser) {
+        User[] updated = new User[1];
+        CompletableFuture<Void> done = journaled(List.of(locks.get(newUser.getId())), () -> {
+            updated[0] = delegate.update(newUser);
+            return JournalCodec.userPut(updated[0]);
+        });
+        StorageJournal.await(done);
+        return updated[0];
+    }
+
+    @Override
+    public void delete(Long id) {
+        CompletableFuture<Void> done = journaled(List.of(locks.get(id)), () -> {
+            if (delegate.findById(id).isEmpty())
+                return null;
+            delegate.delete(id);
+            return JournalCodec.delete(JournalCodec.USER_DELETE, id);
+        });
+        StorageJournal.await(done);
+    }
+
+    @Override
+    public boolean link(Long userId, Long friendId) {
+        return friendshipChanged(userId, friendId, true);
+    }
+
+    @Override
+    public boolean unlink(Long userId, Long friendId) {
+        return friendshipChanged(userId, friendId, false);
+    }
+
+    // как и в JournaledFilmStorage, ожидание записи на диск одно на всю пачку
+    @Override
+    public List<User> createAll(List<User> users) {
+        journal.checkWritable();
+        List<User> created = delegate.createAll(users);
+        List<CompletableFuture<Void>> done = new ArrayList<>(created.size());
+        for (User user : created) {
+            done.add(journaled(List.of(locks.get(user.getId())), () -> currentPut(user.getId())));
+        }
+        done.forEach(StorageJournal::await);
+        return created;
+    }
+
+    @Override
+    public List<BatchStatus> linkAll(List<Friendship> friendships) {
+        BatchStatus[] statuses = new BatchStatus[friendships.size()];
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++) {
+            Long userId = friendships.get(i).userId();
+            Long friendId = friendships.get(i).friendId();
+            int index = i;
+            try {
+                done.add(journaled(locks.getPair(userId, friendId), () -> {
+                    boolean changed = delegate.link(userId, friendId);
+                    statuses[index] = changed ? BatchStatus.OK : BatchStatus.UNCHANGED;
+                    return changed ? JournalCodec.pair(JournalCodec.FRIEND_LINK, userId, friendId) : null;
+                }));
+            } catch (NotFoundException e) {
+                statuses[i] = BatchStatus.NOT_FOUND;
+            }
+        }
+        done.forEach(StorageJournal::await);
+        return Arrays.asList(statuses);
+    }
+
+    @Override
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+        return delegate.findExistingIds(ids);
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<User> findAllByIds(Collection<Long> ids) {
+        return delegate.findAllByIds(ids);
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long countFriendships() {
+        return delegate.countFriendships();
+    }
+
+    @Override
+    public List<User> findCommonFriends(Long userId, Long otherId) {
+        return delegate.findCommonFriends(userId, otherId);
+    }
+
+    @Override
+    public int countCommonFriends(Long userId, Long otherId) {
+        return delegate.countCommonFriends(userId, otherId);
+    }
+
+    private boolean friendshipChanged(Long userId, Long friendId, boolean link) {
+        boolean[] changed = new boolean[1];
+        CompletableFuture<Void> done = journaled(locks.getPair(userId, friendId), () -> {
+            changed[0] = link ? delegate.link(userId, friendId) : delegate.unlink(userId, friendId);
+            if (!changed[0])
+                return null;
+            return JournalCodec.pair(link ? JournalCodec.FRIEND_LINK : JournalCodec.FRIEND_UNLINK, userId, friendId);
+        });
+        StorageJournal.await(done);
+        return changed[0];
+    }
+
+    // как в JournaledFilmStorage: созданный пользователь пишется вместе с друзьями, добавленными до записи
+    private byte[] currentPut(long userId) {
+        return delegate.findById(userId).map(JournalCodec::userPut).orElse(null);
+    }
+
+    private CompletableFuture<Void> journaled(List<Lock> userLocks, JournalChange change) {
+        userLocks.forEach(Lock::lock);
+        try {
+            journal.checkWritable();
+            byte[] record = change.apply();
+            return record == null ? CompletableFuture.completedFuture(null) : journal.append(record);
+        } finally {
+            userLocks.forEach(Lock::unlock);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// журнал изменений хранилищ (write-ahead log) и снимки.
+// записи копятся в очереди и пишутся отдельным потоком пачками: одна запись на диск и один fsync
+// на всю пачку, а каждый вызывающий дожидается, пока его пачка окажется на диске.
+// журнал разбит на сегменты; снимок помнит, с какого сегмента начинать повтор,
+// и более старые сегменты после снимка удаляются
+@Slf4j
+public class StorageJournal implements Closeable {
+    private static final int MAX_BATCH = 4096;
+    private static final Pattern SEGMENT = Pattern.compile("journal-(\\d{20})\\.log");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d{20})\\.bin");
+
+    private final Path directory;
+    private final boolean fsync;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    // после ошибки записи журнал больше не принимает изменения
+    private volatile IOException failure;
+    // доступны только потоку записи
+    private FileChannel channel;
+    private long segment;
+
+    private StorageJournal(Path directory, boolean fsync, long segment) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.segment = segment;
+        channel = openSegment(segment);
+        writer = Thread.ofPlatform().name("storage-journal").daemon().start(this::writeLoop);
+    }
+
+    // восстанавливает хранилища из последнего снимка и хвоста журнала и открывает новый сегмент
+    public static StorageJournal open(Path directory, boolean fsync,
+                                      InMemoryFilmStorage films, InMemoryUserStorage users) throws IOException {
+        Files.createDirectories(directory);
+        long started = System.nanoTime();
+        long replayFrom = 0;
+        List<Long> snapshots = numbered(directory, SNAPSHOT);
+        if (!snapshots.isEmpty()) {
+            replayFrom = snapshots.get(snapshots.size() - 1);
+            StorageSnapshot.load(snapshotFile(directory, replayFrom), films, users);
+        }
+        long nextSegment = replayFrom;
+        long records = 0;
+        for (long number : numbered(directory, SEGMENT)) {
+            nextSegment = Math.max(nextSegment, number + 1);
+            if (number >= replayFrom)
+                records += replay(segmentFile(directory, number), films, users);
+        }
+        log.info("Хранилище восстановлено за {} мс: снимок с сегмента {}, повторено записей журнала {}",
+                (System.nanoTime() - started) / 1_000_000, replayFrom, records);
+        return new StorageJournal(directory, fsync, nextSegment);
+    }
+
+    // добавляет запись в очередь; порядок записей в журнале совпадает с порядком вызовов
+    public CompletableFuture<Void> append(byte[] record) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Request(record, done));
+        if (failure != null)
+            done.completeExceptionally(failure);
+        return done;
+    }
+
+    // вызывается до изменения памяти: после ошибки записи изменения отклоняются, не меняя памяти,
+    // иначе клиент получил бы ошибку, а изменение было бы видно и пропало бы при перезапуске.
+    // изменения, уже стоявшие в очереди в момент ошибки, в памяти остаются
+    void checkWritable() {
+        IOException error = failure;
+        if (error != null)
+            throw new UncheckedIOException(error);
+    }
+
+    // ожидание записи на диск с пробросом ошибки журнала вызывающему
+    static void await(CompletableFuture<Void> done) {
+        try {
+            done.join();
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io)
+                throw new UncheckedIOException(io);
+            throw e;
+        }
+    }
+
+    // снимок текущего состояния: журнал переключается на новый сегмент, затем в файл пишутся
+    // все объекты. изменения, пришедшие во время записи, попадут и в новый сегмент, и, возможно,
+    // в снимок - повторное применение событий при восстановлении даёт то же состояние
+    public void snapshot(InMemoryFilmStorage films, InMemoryUserStorage users) throws IOException {
+        long started = System.nanoTime();
+        long replayFrom = rotate();
+        StorageSnapshot.write(snapshotFile(directory, replayFrom), films, users);
+        for (long number : numbered(directory, SEGMENT)) {
+            if (number < replayFrom)
+                Files.deleteIfExists(segmentFile(directory, number));
+        }
+        for (long number : numbered(directory, SNAPSHOT)) {
+            if (number < replayFrom)
+                Files.deleteIfExists(snapshotFile(directory, number));
+        }
+        log.info("Снимок хранилища записан за {} мс, повтор журнала с сегмента {}",
+                (System.nanoTime() - started) / 1_000_000, replayFrom);
+    }
+
+    @Override
+    public void close() throws IOException {
+        queue.add(Request.STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long rotate() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Request(null, done));
+        if (failure != null)
+            done.completeExceptionally(failure);
+        await(done);
+        return segment;
+    }
+
+    private void writeLoop() {
+        List<Request> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                int written = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    Request request = batch.get(i);
+                    if (request.record() != null)
+                        continue;
+                    // запись до переключения сегмента должна уйти в старый сегмент
+                    flush(batch.subList(written, i));
+                    written = i + 1;
+                    if (request == Request.STOP) {
+                        flush(batch.subList(written, batch.size()));
+                        channel.close();
+                        return;
+                    }
+                    channel.close();
+                    channel = openSegment(++segment);
+                    request.done().complete(null);
+                }
+                flush(batch.subList(written, batch.size()));
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Журнал хранилища остановлен из-за ошибки записи", e);
+            failure = e;
+            batch.forEach(request -> request.done().completeExceptionally(e));
+            queue.forEach(request -> request.done().completeExceptionally(e));
+        }
+    }
+
+    private void flush(List<Request> requests) throws IOException {
+        if (requests.isEmpty())
+            return;
+        ByteBuffer[] buffers = new ByteBuffer[requests.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(requests.get(i).record());
+        }
+        while (buffers[buffers.length - 1].hasRemaining()) {
+            channel.write(buffers);
+        }
+        if (fsync)
+            channel.force(false);
+        requests.forEach(request -> request.done().complete(null));
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentFile(directory, number), CREATE, WRITE, APPEND);
+    }
+
+    private static long replay(Path file, InMemoryFilmStorage films, InMemoryUserStorage users) throws IOException {
+        long records = 0;
+        try (FileChannel segmentChannel = FileChannel.open(file, READ)) {
+            MappedByteBuffer in = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+            for (ByteBuffer record = JournalCodec.nextRecord(in); record != null; record = JournalCodec.nextRecord(in)) {
+                JournalCodec.apply(record, films, users);
+                records++;
+            }
+            if (in.hasRemaining())
+                log.warn("Сегмент {} оборван, отброшено {} байт", file, in.remaining());
+        }
+        return records;
+    }
+
+    private static List<Long> numbered(Path directory, Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static Path segmentFile(Path directory, long number) {
+        return directory.resolve(String.format("journal-%020d.log", number));
+    }
+
+    private static Path snapshotFile(Path directory, long number) {
+        return directory.resolve(String.format("snapshot-%020d.bin", number));
+    }
+
+    // record == null - переключение сегмента или остановка
+    private record Request(byte[] record, CompletableFuture<Void> done) {
+        static final Request STOP = new Request(null, new CompletableFuture<>());
+    }
+}
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// снимок всех пользователей и фильмов и наибольших выданных id в компактном двоичном виде.
+// пишется во временный файл и становится видимым только после fsync и атомарного переименования,
+// читается через отображение файла в память
+final class StorageSnapshot {
+    private static final int MAGIC = 0x464D5257;
+    // снимки без наибольших выданных id
+    private static final int VERSIONED_MAGIC = 0x464D5256;
+    // снимки без версий объектов
+    private static final int LEGACY_MAGIC = 0x464D5253;
+    private static final byte END = 0;
+    private static final byte USER = 1;
+    private static final byte FILM = 2;
+
+    private StorageSnapshot() {
+    }
+
+    static void write(Path file, InMemoryFilmStorage films, InMemoryUserStorage users) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, CREATE, TRUNCATE_EXISTING, WRITE);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(MAGIC);
+            // читаются до объектов: id, выданные позже, есть в снимке или в новом сегменте журнала
+            out.writeLong(users.lastId());
+            out.writeLong(films.lastId());
+            for (User user : users.findAll()) {
+                out.writeByte(USER);
+                JournalCodec.writeUser(out, user);
+                out.writeLong(user.getVersion());
+            }
+            for (Film film : films.findAll()) {
+                out.writeByte(FILM);
+                JournalCodec.writeFilm(out, film);
+                out.writeLong(film.getVersion());
+            }
+            out.writeByte(END);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    static void load(Path file, InMemoryFilmStorage films, InMemoryUserStorage users) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int magic = in.getInt();
+            if (magic != MAGIC && magic != VERSIONED_MAGIC && magic != LEGACY_MAGIC)
+                throw new IOException("Файл не является снимком хранилища: " + file);
+            if (magic == MAGIC) {
+                users.observeId(in.getLong());
+                films.observeId(in.getLong());
+            }
+            boolean versioned = magic != LEGACY_MAGIC;
+            for (byte type = in.get(); type != END; type = in.get()) {
+                if (type == USER) {
+                    User user = JournalCodec.readUser(in);
+                    if (versioned)
+                        user.setVersion(in.getLong());
+                    users.restore(user);
+                } else if (type == FILM) {
+                    Film film = JournalCodec.readFilm(in);
+                    if (versioned)
+                        film.setVersion(in.getLong());
+                    films.restore(film);
+                } else {
+                    throw new IOException("Повреждён снимок хранилища: " + file);
+                }
+            }
+        }
+    }
+}
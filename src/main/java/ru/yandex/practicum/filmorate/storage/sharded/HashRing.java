@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.storage.sharded;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+// консистентное хеширование id по шардам: у каждого шарда VIRTUAL_NODES точек на кольце хешей,
+// id принадлежит шарду первой точки не меньше хеша id. точки разбросаны равномерно, поэтому шарды
+// получают близкие доли id, а при добавлении шарда к нему переходит ~1/N id остальных, без перемешивания всех
+final class HashRing {
+    private static final int VIRTUAL_NODES = 128;
+
+    // точки по возрастанию и шарды, которым они принадлежат
+    private final long[] points;
+    private final int[] owners;
+
+    HashRing(int shards) {
+        if (shards <= 0)
+            throw new IllegalArgumentException("Число шардов должно быть > 0: " + shards);
+        long[] unsorted = new long[shards * VIRTUAL_NODES];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                unsorted[shard * VIRTUAL_NODES + node] = mix(((long) (shard + 1) << 32) | node);
+            }
+        }
+        int[] order = IntStream.range(0, unsorted.length).boxed()
+                .sorted(Comparator.comparingLong(i -> unsorted[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        points = new long[order.length];
+        owners = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = unsorted[order[i]];
+            owners[i] = order[i] / VIRTUAL_NODES;
+        }
+    }
+
+    int shardOf(long id) {
+        int index = Arrays.binarySearch(points, mix(id));
+        if (index < 0)
+            index = -index - 1;
+        // за последней точкой кольцо замыкается на первую
+        return owners[index == points.length ? 0 : index];
+    }
+
+    // перемешивание SplitMix64: соседние id попадают в разные места кольца
+    private static long mix(long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage.sharded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// сборка ответов шардов в один ответ
+final class ShardMerge {
+    private ShardMerge() {
+    }
+
+    // слияние упорядоченных ответов шардов, первые limit элементов: O(limit * log шардов)
+    static <T> List<T> merge(List<List<T>> parts, Comparator<T> order, int limit) {
+        // курсор: номер ответа и позиция в нём
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> order.compare(parts.get(a[0]).get(a[1]), parts.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            total += parts.get(i).size();
+            if (!parts.get(i).isEmpty())
+                heads.add(new int[]{i, 0});
+        }
+        List<T> result = new ArrayList<>(Math.min(limit, total));
+        while (result.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> part = parts.get(head[0]);
+            result.add(part.get(head[1]));
+            if (++head[1] < part.size())
+                heads.add(head);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // объединение множеств id из разных шардов: каждый id хранится только в одном шарде
+    static long[] union(List<long[]> parts) {
+        long[] result = new long[parts.stream().mapToInt(part -> part.length).sum()];
+        int size = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, result, size, part.length);
+            size += part.length;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+}
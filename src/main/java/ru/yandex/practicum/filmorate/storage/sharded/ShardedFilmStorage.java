@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage.sharded;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.IdGenerator;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.StorageValidator;
+
+import java.util.*;
+
+// фильмы, разложенные по шардам консистентным хешированием id. шард - отдельное хранилище в памяти
+// со своими индексами и блокировками. лайк хранится в шарде фильма, поэтому списки лайкнутых
+// пользователем фильмов собираются со всех шардов. популярные фильмы - слияние топов шардов:
+// фильм из общего топа входит и в топ своего шарда, так что count фильмов от каждого шарда достаточно
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "sharded")
+@Slf4j
+public class ShardedFilmStorage implements FilmStorage {
+    // порядок списка популярных, как у шардов: больше лайков, при равенстве меньше id
+    private static final Comparator<Film> POPULAR_ORDER = Comparator.<Film>comparingInt(film -> film.getLikes().size())
+            .reversed()
+            .thenComparing(Film::getId);
+    private static final Comparator<Film> ID_ORDER = Comparator.comparing(Film::getId);
+
+    private final List<InMemoryFilmStorage> shards;
+    private final HashRing ring;
+    // id выдаются до выбора шарда, поэтому общие для всех шардов
+    private final IdGenerator idGenerator = new IdGenerator();
+
+    public ShardedFilmStorage(@Value("${filmorate.storage.shards:4}") int shards) {
+        this.ring = new HashRing(shards);
+        List<InMemoryFilmStorage> created = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            created.add(new InMemoryFilmStorage());
+        }
+        this.shards = List.copyOf(created);
+        log.info("Хранилище фильмов разделено на шардов: {}", shards);
+    }
+
+    @Override
+    public Film create(Film film) {
+        StorageValidator.validateFilm(film);
+        film.setId(idGenerator.nextId());
+        if (film.getLikes() == null)
+            film.setLikes(new IdSet());
+        return shard(film.getId()).restore(film);
+    }
+
+    @Override
+    public Film update(Film newFilm) {
+        if (newFilm.getId() == null || newFilm.getId() <= 0)
+            throw new ValidationException("id должен быть > 0");
+        return shard(newFilm.getId()).update(newFilm);
+    }
+
+    @Override
+    public void delete(Long id) {
+        shard(id).delete(id);
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        List<List<Film>> parts = new ArrayList<>(shards.size());
+        for (InMemoryFilmStorage shard : shards) {
+            parts.add(List.copyOf(shard.findAll()));
+        }
+        return ShardMerge.merge(parts, ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    // у каждого шарда своя страница после afterId, общая страница - первые limit из их слияния
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        List<List<Film>> parts = new ArrayList<>(shards.size());
+        for (InMemoryFilmStorage shard : shards) {
+            parts.add(shard.findPage(afterId, limit));
+        }
+        return ShardMerge.merge(parts, ID_ORDER, limit);
+    }
+
+    @Override
+    public Optional<Film> findById(Long id) {
+        return shard(id).findById(id);
+    }
+
+    // id группируются по шардам, по одному запросу к шарду, затем восстанавливается порядок ids
+    @Override
+    public List<Film> findAllByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long id : ids) {
+            byShard.computeIfAbsent(ring.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, Film> found = new HashMap<>();
+        byShard.forEach((shard, shardIds) ->
+                shards.get(shard).findAllByIds(shardIds).forEach(film -> found.put(film.getId(), film)));
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public long count() {
+        return shards.stream().mapToLong(InMemoryFilmStorage::count).sum();
+    }
+
+    @Override
+    public long[] findLikedFilmIds(Long userId) {
+        List<long[]> parts = new ArrayList<>(shards.size());
+        for (InMemoryFilmStorage shard : shards) {
+            parts.add(shard.findLikedFilmIds(userId));
+        }
+        return ShardMerge.union(parts);
+    }
+
+    @Override
+    public Map<Long, long[]> findLikedFilmIds(Collection<Long> userIds) {
+        Map<Long, List<long[]>> parts = new HashMap<>();
+        for (InMemoryFilmStorage shard : shards) {
+            shard.findLikedFilmIds(userIds).forEach((userId, liked) ->
+                    parts.computeIfAbsent(userId, id -> new ArrayList<>()).add(liked));
+        }
+        Map<Long, long[]> result = new HashMap<>();
+        parts.forEach((userId, liked) -> result.put(userId, ShardMerge.union(liked)));
+        return result;
+    }
+
+    @Override
+    public long countLikes() {
+        return shards.stream().mapToLong(InMemoryFilmStorage::countLikes).sum();
+    }
+
+    @Override
+    public int countLikes(Long filmId) {
+        return shard(filmId).countLikes(filmId);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return shard(filmId).addLike(filmId, userId);
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        return shard(filmId).removeLike(filmId, userId);
+    }
+
+    @Override
+    public long[] removeLikesOf(Long userId) {
+        List<long[]> parts = new ArrayList<>(shards.size());
+        for (InMemoryFilmStorage shard : shards) {
+            parts.add(shard.removeLikesOf(userId));
+        }
+        return ShardMerge.union(parts);
+    }
+
+    // лайки пачки раздаются шардам их фильмов, статусы возвращаются на места элементов
+    @Override
+    public List<BatchStatus> addLikes(List<Like> likes) {
+        Map<Integer, List<Integer>> byShard = new HashMap<>();
+        for (int i = 0; i < likes.size(); i++) {
+            byShard.computeIfAbsent(ring.shardOf(likes.get(i).filmId()), shard -> new ArrayList<>()).add(i);
+        }
+        BatchStatus[] statuses = new BatchStatus[likes.size()];
+        byShard.forEach((shard, indexes) -> {
+            List<BatchStatus> shardStatuses = shards.get(shard).addLikes(indexes.stream().map(likes::get).toList());
+            for (int k = 0; k < indexes.size(); k++) {
+                statuses[indexes.get(k)] = shardStatuses.get(k);
+            }
+        });
+        return Arrays.asList(statuses);
+    }
+
+    @Override
+    public List<Film> getPopular(int count) {
+        List<List<Film>> parts = new ArrayList<>(shards.size());
+        for (InMemoryFilmStorage shard : shards) {
+            parts.add(shard.getPopular(count));
+        }
+        return ShardMerge.merge(parts, POPULAR_ORDER, count);
+    }
+
+    // номер шарда, в котором лежит фильм с этим id
+    public int shardOf(long id) {
+        return ring.shardOf(id);
+    }
+
+    private InMemoryFilmStorage shard(long id) {
+        return shards.get(ring.shardOf(id));
+    }
+}
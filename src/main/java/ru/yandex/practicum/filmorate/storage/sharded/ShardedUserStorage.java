@@ -0,0 +1,189 @@
+package ru.yandex.practicum.filmorate.storage.sharded;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.IdSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IdGenerator;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StorageValidator;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+
+// пользователи, разложенные по шардам консистентным хешированием id, как в ShardedFilmStorage.
+// каждая сторона дружбы хранится в шарде своего пользователя, поэтому дружба между шардами -
+// две половины в двух шардах. изменения дружбы и удаление пользователя идут под блокировками
+// этого хранилища по id, общими для всех шардов: встречные изменения одной пары не перемешиваются
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "sharded")
+@Slf4j
+public class ShardedUserStorage implements UserStorage {
+    private static final Comparator<User> ID_ORDER = Comparator.comparing(User::getId);
+
+    private final List<InMemoryUserStorage> shards;
+    private final HashRing ring;
+    private final IdGenerator idGenerator = new IdGenerator();
+    private final StripedLocks locks = new StripedLocks();
+
+    public ShardedUserStorage(@Value("${filmorate.storage.shards:4}") int shards) {
+        this.ring = new HashRing(shards);
+        List<InMemoryUserStorage> created = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            created.add(new InMemoryUserStorage());
+        }
+        this.shards = List.copyOf(created);
+        log.info("Хранилище пользователей разделено на шардов: {}", shards);
+    }
+
+    @Override
+    public User create(User user) {
+        StorageValidator.validateUser(user);
+        if (user.getName() == null || user.getName().isBlank())
+            user.setName(user.getLogin());
+        user.setId(idGenerator.nextId());
+        if (user.getFriends() == null)
+            user.setFriends(new IdSet());
+        return shard(user.getId()).restore(user);
+    }
+
+    @Override
+    public User update(User newUser) {
+        if (newUser.getId() == null || newUser.getId() <= 0)
+            throw new ValidationException("id должен быть > 0");
+        return shard(newUser.getId()).update(newUser);
+    }
+
+    // шард пользователя убирает его и стороны дружбы своих же пользователей,
+    // стороны друзей из других шардов убираются здесь
+    @Override
+    public void delete(Long id) {
+        Lock lock = locks.get(id);
+        lock.lock();
+        try {
+            InMemoryUserStorage home = shard(id);
+            Optional<User> removed = home.findById(id);
+            if (removed.isEmpty())
+                return;
+            home.delete(id);
+            for (long friendId : removed.get().getFriends().snapshot()) {
+                InMemoryUserStorage friendShard = shard(friendId);
+                if (friendShard != home)
+                    friendShard.unlinkHalf(friendId, id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        List<List<User>> parts = new ArrayList<>(shards.size());
+        for (InMemoryUserStorage shard : shards) {
+            parts.add(List.copyOf(shard.findAll()));
+        }
+        return ShardMerge.merge(parts, ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        List<List<User>> parts = new ArrayList<>(shards.size());
+        for (InMemoryUserStorage shard : shards) {
+            parts.add(shard.findPage(afterId, limit));
+        }
+        return ShardMerge.merge(parts, ID_ORDER, limit);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return shard(id).findById(id);
+    }
+
+    @Override
+    public List<User> findAllByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long id : ids) {
+            byShard.computeIfAbsent(ring.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, User> found = new HashMap<>();
+        byShard.forEach((shard, shardIds) ->
+                shards.get(shard).findAllByIds(shardIds).forEach(user -> found.put(user.getId(), user)));
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public long count() {
+        return shards.stream().mapToLong(InMemoryUserStorage::count).sum();
+    }
+
+    // дружба между шардами - по половине в каждом, поэтому складываются половины, а не пары шардов
+    @Override
+    public long countFriendships() {
+        return shards.stream().mapToLong(InMemoryUserStorage::countFriendHalfLinks).sum() / 2;
+    }
+
+    @Override
+    public boolean link(Long userId, Long friendId) {
+        List<Lock> pair = locks.getPair(userId, friendId);
+        pair.forEach(Lock::lock);
+        try {
+            // оба пользователя проверяются до изменений: половина дружбы с несуществующим не появится
+            getExisting(userId);
+            getExisting(friendId);
+            boolean changed = shard(userId).linkHalf(userId, friendId);
+            return shard(friendId).linkHalf(friendId, userId) || changed;
+        } finally {
+            pair.forEach(Lock::unlock);
+        }
+    }
+
+    @Override
+    public boolean unlink(Long userId, Long friendId) {
+        List<Lock> pair = locks.getPair(userId, friendId);
+        pair.forEach(Lock::lock);
+        try {
+            getExisting(userId);
+            getExisting(friendId);
+            boolean changed = shard(userId).unlinkHalf(userId, friendId);
+            return shard(friendId).unlinkHalf(friendId, userId) || changed;
+        } finally {
+            pair.forEach(Lock::unlock);
+        }
+    }
+
+    // списки друзей читаются из шардов обоих пользователей, сами друзья - из своих шардов
+    @Override
+    public List<User> findCommonFriends(Long userId, Long otherId) {
+        long[] common = IdSet.intersect(getExisting(userId).getFriends().snapshot(),
+                getExisting(otherId).getFriends().snapshot());
+        return findAllByIds(Arrays.stream(common).boxed().toList());
+    }
+
+    @Override
+    public int countCommonFriends(Long userId, Long otherId) {
+        return IdSet.intersectionSize(getExisting(userId).getFriends().snapshot(),
+                getExisting(otherId).getFriends().snapshot());
+    }
+
+    private User getExisting(Long id) {
+        return shard(id).findById(id).orElseThrow(() -> {
+            log.debug("Пользователь не найден с id: {}", id);
+            return new NotFoundException("Пользователь с id=" + id + " не найден");
+        });
+    }
+
+    // номер шарда, в котором лежит пользователь с этим id
+    public int shardOf(long id) {
+        return ring.shardOf(id);
+    }
+
+    private InMemoryUserStorage shard(long id) {
+        return shards.get(ring.shardOf(id));
+    }
+}
@@ -0,0 +1,36 @@
+CREATE TABLE users (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email    VARCHAR(255) NOT NULL,
+    login    VARCHAR(255) NOT NULL,
+    name     VARCHAR(255),
+    birthday DATE         NOT NULL
+);
+
+-- likes_count дублирует число строк в likes, чтобы топ фильмов читался по индексу, без группировки лайков
+CREATE TABLE films (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name         VARCHAR(255) NOT NULL,
+    description  VARCHAR(200),
+    release_date DATE         NOT NULL,
+    duration     INT          NOT NULL,
+    likes_count  INT          NOT NULL DEFAULT 0
+);
+
+CREATE INDEX idx_films_popularity ON films (likes_count DESC, id);
+
+CREATE TABLE likes (
+    film_id BIGINT NOT NULL REFERENCES films (id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    PRIMARY KEY (film_id, user_id)
+);
+
+CREATE INDEX idx_likes_user ON likes (user_id);
+
+-- дружба симметрична и хранится двумя строками, по одной на каждую сторону
+CREATE TABLE friendships (
+    user_id   BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    friend_id BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    PRIMARY KEY (user_id, friend_id)
+);
+
+CREATE INDEX idx_friendships_friend ON friendships (friend_id);
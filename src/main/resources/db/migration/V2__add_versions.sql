@@ -0,0 +1,4 @@
+-- версии строк для ETag: растут при каждом изменении фильма, включая лайки,
+-- и пользователя, включая список друзей
+ALTER TABLE films ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.controller.NdjsonStreamer;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// пакетная загрузка через HTTP: по результату на каждый элемент в порядке запроса
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BatchApiTests {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    FilmStorage filmStorage;
+    @Autowired
+    UserStorage userStorage;
+
+    @Test
+    void shouldCreateUsersAndReportInvalidOnes() throws Exception {
+        mockMvc.perform(post("/users/batch").contentType(MediaType.APPLICATION_JSON).content("""
+                        [{"email": "one@mail.ru", "login": "one", "birthday": "2000-01-01"},
+                         {"email": "wrong", "login": "two", "birthday": "2000-01-01"},
+                         null]
+                        """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].status").value("OK"))
+                .andExpect(jsonPath("$[0].id").isNumber())
+                .andExpect(jsonPath("$[1].status").value("INVALID"))
+                .andExpect(jsonPath("$[1].error").value(org.hamcrest.Matchers.containsString("@")))
+                .andExpect(jsonPath("$[2].status").value("INVALID"));
+    }
+
+    @Test
+    void shouldImportFilmsFromNdjsonLineByLine() throws Exception {
+        long before = filmStorage.count();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            body.append("{\"name\": \"film").append(i)
+                    .append("\", \"releaseDate\": \"2002-04-14\", \"duration\": 125}\n");
+            if (i == 1200)
+                body.append("{not json\n");
+        }
+        mockMvc.perform(post("/films/batch").contentType(NdjsonStreamer.NDJSON).content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2501))
+                .andExpect(jsonPath("$[1201].status").value("INVALID"))
+                .andExpect(jsonPath("$[2500].status").value("OK"));
+        assertEquals(before + 2500, filmStorage.count());
+    }
+
+    @Test
+    void shouldAddLikesAndFriendsInBulk() throws Exception {
+        long filmId = filmStorage.create(newFilm()).getId();
+        long first = userStorage.create(newUser("bulk1")).getId();
+        long second = userStorage.create(newUser("bulk2")).getId();
+
+        mockMvc.perform(post("/films/likes/batch").contentType(MediaType.APPLICATION_JSON).content("""
+                        [{"filmId": %d, "userId": %d},
+                         {"filmId": %d, "userId": %d},
+                         {"filmId": %d, "userId": %d},
+                         {"filmId": 999999, "userId": %d},
+                         {"filmId": %d, "userId": 999999},
+                         {"filmId": 0, "userId": %d}]
+                        """.formatted(filmId, first, filmId, second, filmId, first, first, filmId, first)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("OK"))
+                .andExpect(jsonPath("$[1].status").value("OK"))
+                .andExpect(jsonPath("$[2].status").value("UNCHANGED"))
+                .andExpect(jsonPath("$[3].status").value("NOT_FOUND"))
+                .andExpect(jsonPath("$[4].status").value("NOT_FOUND"))
+                .andExpect(jsonPath("$[5].status").value("INVALID"));
+        assertEquals(2, filmStorage.findById(filmId).orElseThrow().getLikes().size());
+        assertEquals(filmId, filmStorage.getPopular(1).getFirst().getId());
+
+        mockMvc.perform(post("/users/friends/batch").contentType(NdjsonStreamer.NDJSON).content("""
+                        {"userId": %d, "friendId": %d}
+                        {"userId": %d, "friendId": %d}
+                        {"userId": %d, "friendId": 999999}
+                        """.formatted(first, second, first, first, first)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("OK"))
+                .andExpect(jsonPath("$[1].status").value("INVALID"))
+                .andExpect(jsonPath("$[2].status").value("NOT_FOUND"));
+        assertTrue(userStorage.findById(second).orElseThrow().getFriends().contains(first));
+    }
+
+    @Test
+    void shouldRejectOversizedJsonBatch() throws Exception {
+        String body = "[" + "null,".repeat(10_000) + "null]";
+        mockMvc.perform(post("/users/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldRejectNullIdsInLikesAndFriends() throws Exception {
+        mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"name": "nulls", "description": "d", "releaseDate": "2002-04-14", "duration": 125,
+                         "likes": [null]}
+                        """))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"email": "nulls@mail.ru", "login": "nulls", "birthday": "2000-01-01", "friends": [1, null]}
+                        """))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/users/batch").contentType(NdjsonStreamer.NDJSON).content("""
+                        {"email": "nulls@mail.ru", "login": "nulls", "birthday": "2000-01-01", "friends": [null]}
+                        """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("INVALID"));
+    }
+
+    private Film newFilm() {
+        Film film = new Film();
+        film.setName("bulk");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2002, 4, 14));
+        film.setDuration(125);
+        return film;
+    }
+
+    private User newUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
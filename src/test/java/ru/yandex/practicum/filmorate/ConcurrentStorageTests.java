@@ -0,0 +1,276 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReadCache;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.sharded.ShardedFilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// нагрузочные проверки: параллельные лайки и добавления в друзья не должны теряться
+public class ConcurrentStorageTests {
+    private static final int THREADS = 8;
+    private static final int FILMS = 20;
+    private static final int USERS = 400;
+
+    FilmStorage filmStorage;
+    UserStorage userStorage;
+    FilmService filmService;
+    UserService userService;
+    List<Long> filmIds;
+    List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        userStorage = new InMemoryUserStorage();
+        ReadCache readCache = new ReadCache(10_000);
+        filmService = new FilmService(filmStorage, userStorage, readCache);
+        userService = new UserService(userStorage, filmStorage, readCache);
+        filmIds = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            Film film = new Film();
+            film.setName("movie" + i);
+            film.setDescription("description");
+            film.setReleaseDate(LocalDate.of(2002, 4, 14));
+            film.setDuration(125);
+            filmIds.add(filmService.create(film).getId());
+        }
+        userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@mail.ru");
+            user.setLogin("user" + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            userIds.add(userService.create(user).getId());
+        }
+    }
+
+    @Test
+    void shouldNotLoseConcurrentLikes() throws Exception {
+        // каждый поток ставит лайки всем фильмам от своей части пользователей
+        runInParallel(thread -> {
+            for (int i = thread; i < USERS; i += THREADS) {
+                for (Long filmId : filmIds) {
+                    filmService.addLike(filmId, userIds.get(i));
+                }
+            }
+        });
+        for (Long filmId : filmIds) {
+            assertEquals(USERS, filmService.findById(filmId).getLikes().size());
+        }
+
+        // затем параллельно снимаем лайки: у фильма с номером k остаётся k лайков
+        runInParallel(thread -> {
+            for (int k = thread; k < FILMS; k += THREADS) {
+                for (int i = k; i < USERS; i++) {
+                    filmService.removeLike(filmIds.get(k), userIds.get(i));
+                }
+            }
+        });
+        List<Film> popular = filmService.getPopular(FILMS);
+        assertEquals(FILMS, popular.size());
+        for (int i = 0; i < FILMS; i++) {
+            int expectedLikes = FILMS - 1 - i;
+            assertEquals(filmIds.get(expectedLikes), popular.get(i).getId());
+            assertEquals(expectedLikes, popular.get(i).getLikes().size());
+        }
+    }
+
+    @Test
+    void shouldNotLoseConcurrentFriends() throws Exception {
+        Long hubId = userIds.get(0);
+        runInParallel(thread -> {
+            for (int i = 1 + thread; i < USERS; i += THREADS) {
+                userService.addFriend(userIds.get(i), hubId);
+                userService.addFriend(userIds.get(i), userIds.get(i - 1));
+            }
+        });
+        assertEquals(USERS - 1, userService.getAllFriends(hubId).size());
+        for (int i = 1; i < USERS; i++) {
+            User user = userService.findById(userIds.get(i));
+            assertTrue(user.getFriends().contains(hubId));
+            assertTrue(user.getFriends().contains(userIds.get(i - 1)));
+            assertTrue(userService.findById(userIds.get(i - 1)).getFriends().contains(user.getId()));
+        }
+    }
+
+    @Test
+    void shouldListFilmsAsAfterSomeChangeWhileTheyChange() throws Exception {
+        // фильмы создаются и удаляются по возрастанию id, поэтому любой список на момент после
+        // очередного изменения - непрерывный ряд id, из которого удалены чётные id до какого-то
+        int created = 3000;
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < created; i++) {
+                Film film = new Film();
+                film.setName("listed" + i);
+                film.setDescription("description");
+                film.setReleaseDate(LocalDate.of(2002, 4, 14));
+                film.setDuration(125);
+                filmStorage.create(film);
+            }
+            for (long id = 2; id <= FILMS + created; id += 2) {
+                filmStorage.delete(id);
+            }
+        });
+        int checked = 0;
+        while (writer.isAlive() || checked == 0) {
+            List<Film> films = (List<Film>) filmStorage.findAll();
+            Set<Long> ids = new HashSet<>();
+            long previous = 0;
+            // обход и доступ по индексу видят один и тот же список
+            int index = 0;
+            for (Film film : films) {
+                assertSame(film, films.get(index++));
+                assertTrue(film.getId() > previous);
+                previous = film.getId();
+                ids.add(film.getId());
+            }
+            boolean evenSeen = false;
+            for (long id = 1; id <= previous; id++) {
+                if (id % 2 == 1) {
+                    assertTrue(ids.contains(id));
+                } else if (ids.contains(id)) {
+                    evenSeen = true;
+                } else {
+                    // удалённый чётный id не может идти после оставшегося
+                    assertFalse(evenSeen);
+                }
+            }
+            checked++;
+        }
+        writer.join();
+        assertEquals((FILMS + created) / 2, filmStorage.findAll().size());
+    }
+
+    @Test
+    void shouldKeepListingsEqualToStoragesAfterConcurrentWriters() throws Exception {
+        // все потоки одновременно создают, меняют и удаляют фильмы и пользователей:
+        // список всех объектов подменяется без общей блокировки и не должен терять ни одного изменения
+        runInParallel(thread -> {
+            for (int i = 0; i < 300; i++) {
+                Film film = new Film();
+                film.setName("contended" + thread + "-" + i);
+                film.setDescription("description");
+                film.setReleaseDate(LocalDate.of(2002, 4, 14));
+                film.setDuration(125);
+                Long filmId = filmStorage.create(film).getId();
+                filmStorage.addLike(filmIds.get(i % FILMS), userIds.get((thread * 300 + i) % USERS));
+                filmStorage.addLike(filmId, userIds.get(i % USERS));
+                if (i % 3 == 0)
+                    filmStorage.delete(filmId);
+
+                User user = new User();
+                user.setEmail("contended" + thread + "-" + i + "@mail.ru");
+                user.setLogin("contended" + thread + "-" + i);
+                user.setBirthday(LocalDate.of(2000, 1, 1));
+                Long userId = userStorage.create(user).getId();
+                userStorage.link(userId, userIds.get((thread + i) % USERS));
+                if (i % 3 == 1)
+                    userStorage.delete(userId);
+            }
+        });
+        List<Film> films = (List<Film>) filmStorage.findAll();
+        List<Film> filmPages = filmStorage.findPage(0, 100_000);
+        assertEquals(filmPages.size(), films.size());
+        assertEquals(filmStorage.count(), films.size());
+        for (int i = 0; i < films.size(); i++) {
+            assertSame(filmPages.get(i), films.get(i));
+        }
+        List<User> users = (List<User>) userStorage.findAll();
+        List<User> userPages = userStorage.findPage(0, 100_000);
+        assertEquals(userPages.size(), users.size());
+        assertEquals(userStorage.count(), users.size());
+        for (int i = 0; i < users.size(); i++) {
+            assertSame(userPages.get(i), users.get(i));
+        }
+    }
+
+    @Test
+    void shouldRankFilmsLikedOrDeletedRightAfterCreation() throws Exception {
+        raceCreationWithLikesAndDeletes(filmStorage);
+        raceCreationWithLikesAndDeletes(new ShardedFilmStorage(4));
+    }
+
+    // лайк или удаление по угаданному id сразу после появления фильма
+    // не должны разойтись с рейтингом, который create заполняет следом
+    private void raceCreationWithLikesAndDeletes(FilmStorage storage) throws Exception {
+        int created = 5000;
+        long firstId = storage.count() + 1;
+        Thread creator = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < created; i++) {
+                Film film = new Film();
+                film.setName("raced" + i);
+                film.setDescription("description");
+                film.setReleaseDate(LocalDate.of(2002, 4, 14));
+                film.setDuration(125);
+                storage.create(film);
+            }
+        });
+        runInParallel(thread -> {
+            for (long id = firstId + thread; id < firstId + created; id += THREADS) {
+                while (storage.findById(id).isEmpty()) {
+                    Thread.onSpinWait();
+                }
+                if (id % 2 == 0) {
+                    storage.addLike(id, userIds.get(0));
+                } else {
+                    storage.delete(id);
+                }
+            }
+        });
+        creator.join();
+        int count = (int) storage.count();
+        List<Film> expected = storage.findAll().stream()
+                .sorted(Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed()
+                        .thenComparing(Film::getId))
+                .toList();
+        assertEquals(expected, storage.getPopular(count));
+        assertEquals(expected.size(), storage.getPopular(count + 100).size());
+    }
+
+    private void runInParallel(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int number = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(number);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
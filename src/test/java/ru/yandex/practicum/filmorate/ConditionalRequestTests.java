@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// ETag из версий объектов: 304 без тела, пока объект не изменился
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ConditionalRequestTests {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    FilmService filmService;
+    @Autowired
+    UserService userService;
+
+    @Test
+    void shouldAnswerNotModifiedUntilFilmIsLiked() throws Exception {
+        Film film = filmService.create(newFilm());
+        User user = userService.create(newUser("etag-fan"));
+        String etag = etag("/films/" + film.getId());
+
+        mockMvc.perform(get("/films/" + film.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        filmService.addLike(film.getId(), user.getId());
+        mockMvc.perform(get("/films/" + film.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likes[0]").value(user.getId()));
+        assertNotEquals(etag, etag("/films/" + film.getId()));
+    }
+
+    @Test
+    void shouldChangeFriendsEtagWhenFriendChanges() throws Exception {
+        User alpha = userService.create(newUser("etag-alpha"));
+        User beta = userService.create(newUser("etag-beta"));
+        userService.addFriend(alpha.getId(), beta.getId());
+        String etag = etag("/users/" + alpha.getId() + "/friends");
+        mockMvc.perform(get("/users/" + alpha.getId() + "/friends").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // друг есть в ответе со своим списком друзей
+        User gamma = userService.create(newUser("etag-gamma"));
+        userService.addFriend(beta.getId(), gamma.getId());
+        mockMvc.perform(get("/users/" + alpha.getId() + "/friends").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].friends.length()").value(2));
+    }
+
+    @Test
+    void shouldCheckPopularByListedFilms() throws Exception {
+        Film film = filmService.create(newFilm());
+        User user = userService.create(newUser("etag-popular"));
+        // список без ограничения: в него входит и новый фильм
+        String etag = etag("/films/popular?count=1000");
+        mockMvc.perform(get("/films/popular?count=1000").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertNotEquals(etag, etag("/films/popular?count=999"));
+
+        filmService.addLike(film.getId(), user.getId());
+        mockMvc.perform(get("/films/popular?count=1000").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    private String etag(String uri) throws Exception {
+        String etag = mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+
+    private Film newFilm() {
+        Film film = new Film();
+        film.setName("etag");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2002, 4, 14));
+        film.setDuration(125);
+        return film;
+    }
+
+    private User newUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
@@ -1,18 +1,29 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
 import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.controller.NdjsonStreamer;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReadCache;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
 import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,8 +39,8 @@ public class FilmorateApplicationTests {
 	public void setUp() {
 		filmStorage = new InMemoryFilmStorage();
 		userStorage = new InMemoryUserStorage();
-		filmService = new FilmService(filmStorage, userStorage);
-		controller = new FilmController(filmService);
+		filmService = new FilmService(filmStorage, userStorage, new ReadCache(10_000));
+		controller = new FilmController(filmService, new NdjsonStreamer(new ObjectMapper()));
 		film = new Film();
 		film.setName("movie");
 		film.setDescription("description");
@@ -133,4 +144,119 @@ public class FilmorateApplicationTests {
 		film.setDuration(-2);
 		assertThrows(ValidationException.class, () -> controller.create(film));
 	}
+
+	@Test
+	void shouldReturnPopularSameAsFullSort() {
+		List<Long> filmIds = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			filmIds.add(controller.create(newFilm("movie" + i)).getId());
+		}
+		List<Long> userIds = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			User user = new User();
+			user.setEmail("user" + i + "@mail.ru");
+			user.setLogin("user" + i);
+			user.setBirthday(LocalDate.of(2000, 1, 1));
+			userIds.add(userStorage.create(user).getId());
+		}
+
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			Long filmId = filmIds.get(random.nextInt(filmIds.size()));
+			Long userId = userIds.get(random.nextInt(userIds.size()));
+			if (random.nextInt(4) == 0) {
+				controller.removeLike(filmId, userId);
+			} else {
+				controller.addLike(filmId, userId);
+			}
+		}
+		filmService.delete(filmIds.get(0));
+		filmService.delete(filmIds.get(10));
+
+		for (int count : new int[]{1, 10, 48, 100}) {
+			// прежняя реализация - полная сортировка всех фильмов
+			List<Film> expected = filmStorage.findAll().stream()
+					.sorted(Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed()
+							.thenComparing(Film::getId))
+					.limit(count)
+					.toList();
+			assertEquals(expected, controller.getPopular(count, new ServletWebRequest(new MockHttpServletRequest())).getBody());
+		}
+	}
+
+	@Test
+	void shouldReportWhetherLikeChanged() {
+		Film created = controller.create(film);
+		assertTrue(filmStorage.addLike(created.getId(), 1L));
+		assertFalse(filmStorage.addLike(created.getId(), 1L));
+		assertEquals(1, filmStorage.countLikes(created.getId()));
+		assertTrue(filmStorage.removeLike(created.getId(), 1L));
+		assertFalse(filmStorage.removeLike(created.getId(), 1L));
+		assertEquals(0, filmStorage.countLikes(created.getId()));
+		assertThrows(NotFoundException.class, () -> filmStorage.addLike(999L, 1L));
+	}
+
+	@Test
+	void shouldKeepReadFilmsAndListingsUnchangedByLaterWrites() {
+		Film created = controller.create(film);
+		Collection<Film> listing = filmStorage.findAll();
+		assertSame(listing, filmStorage.findAll());
+
+		filmStorage.addLike(created.getId(), 1L);
+		Film update = newFilm("renamed");
+		update.setId(created.getId());
+		filmStorage.update(update);
+		controller.create(newFilm("second"));
+
+		// прочитанные фильм и список - снимки: изменения публикуют новые объекты
+		assertTrue(created.getLikes().isEmpty());
+		assertEquals("movie", created.getName());
+		assertEquals(List.of(created), List.copyOf(listing));
+		Film current = filmStorage.findById(created.getId()).orElseThrow();
+		assertEquals("renamed", current.getName());
+		assertEquals(List.of(1L), List.copyOf(current.getLikes()));
+		assertEquals(2, current.getVersion());
+		assertEquals(2, filmStorage.findAll().size());
+		assertThrows(UnsupportedOperationException.class, () -> filmStorage.findAll().clear());
+	}
+
+	@Test
+	void shouldReturnPagesByCursor() {
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 7; i++) {
+			ids.add(controller.create(newFilm("movie" + i)).getId());
+		}
+		filmService.delete(ids.get(3));
+
+		List<Long> firstPage = controller.findAll(null, 3).stream().map(Film::getId).toList();
+		assertEquals(ids.subList(0, 3), firstPage);
+		List<Long> secondPage = controller.findAll(firstPage.get(2), 3).stream().map(Film::getId).toList();
+		assertEquals(List.of(ids.get(4), ids.get(5), ids.get(6)), secondPage);
+		assertTrue(controller.findAll(ids.get(6), 3).isEmpty());
+		assertEquals(6, controller.findAll(null, null).size());
+		assertThrows(ValidationException.class, () -> controller.findAll(0L, 0));
+	}
+
+	@Test
+	void shouldContinueIdsAfterRestore() {
+		InMemoryFilmStorage storage = new InMemoryFilmStorage();
+		Film restored = newFilm("restored");
+		restored.setId(10L);
+		storage.restore(restored);
+		assertEquals(11L, storage.create(newFilm("next")).getId());
+
+		Film older = newFilm("older");
+		older.setId(3L);
+		storage.restore(older);
+		assertEquals(12L, storage.create(newFilm("next")).getId());
+	}
+
+	private Film newFilm(String name) {
+		Film newFilm = new Film();
+		newFilm.setName(name);
+		newFilm.setDescription("description");
+		newFilm.setReleaseDate(LocalDate.of(2002, 4, 14));
+		newFilm.setDuration(125);
+		return newFilm;
+	}
 }
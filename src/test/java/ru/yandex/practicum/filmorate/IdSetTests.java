@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.IdSet;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdSetTests {
+
+    @Test
+    void shouldBehaveLikeHashSet() {
+        Random random = new Random(7);
+        Set<Long> expected = new HashSet<>();
+        IdSet actual = new IdSet();
+        for (int i = 0; i < 5000; i++) {
+            long id = random.nextInt(300);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(id), actual.add(id));
+            } else {
+                assertEquals(expected.remove(id), actual.remove(id));
+            }
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), actual.size());
+        long[] ids = actual.snapshot();
+        for (int i = 1; i < ids.length; i++) {
+            assertTrue(ids[i - 1] < ids[i]);
+        }
+    }
+
+    @Test
+    void shouldRejectNullIds() {
+        IdSet set = new IdSet();
+        assertThrows(ValidationException.class, () -> set.add(null));
+        assertThrows(ValidationException.class, () -> new IdSet(Arrays.asList(1L, null)));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void shouldRemoveDuplicatesFromSource() {
+        IdSet ids = new IdSet(List.of(5L, 1L, 5L, 3L, 1L));
+        assertArrayEquals(new long[]{1, 3, 5}, ids.snapshot());
+    }
+
+    @Test
+    void shouldAddAllWithSingleMerge() {
+        IdSet ids = new IdSet(List.of(2L, 4L, 6L));
+        assertEquals(2, ids.addAll(new long[]{7, 4, 1, 7}));
+        assertArrayEquals(new long[]{1, 2, 4, 6, 7}, ids.snapshot());
+        assertEquals(0, ids.addAll(new long[]{1, 6}));
+        assertEquals(0, ids.addAll(new long[0]));
+    }
+
+    @Test
+    void shouldIntersectLikeRetainAll() {
+        Random random = new Random(11);
+        // равные размеры (слияние) и сильно разные (галоп)
+        int[][] sizes = {{0, 10}, {50, 60}, {500, 400}, {3, 5000}, {20, 100000}, {1, 1}};
+        for (int[] size : sizes) {
+            IdSet first = randomSet(random, size[0], size[0] * 4 + 10);
+            IdSet second = randomSet(random, size[1], size[0] * 4 + 10);
+            Set<Long> expected = new HashSet<>(first);
+            expected.retainAll(second);
+
+            long[] actual = IdSet.intersect(first.snapshot(), second.snapshot());
+            assertEquals(new IdSet(expected), new IdSet(Arrays.stream(actual).boxed().toList()));
+            assertEquals(expected.size(), actual.length);
+            assertEquals(expected.size(), IdSet.intersectionSize(second.snapshot(), first.snapshot()));
+        }
+    }
+
+    @Test
+    void shouldSerializeAsJsonArray() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        Film film = new Film();
+        film.getLikes().add(2L);
+        film.getLikes().add(1L);
+        String json = mapper.writeValueAsString(film);
+        assertTrue(json.contains("\"likes\":[1,2]"));
+
+        Film restored = mapper.readValue(json, Film.class);
+        assertEquals(film.getLikes(), restored.getLikes());
+    }
+
+    private IdSet randomSet(Random random, int size, int bound) {
+        Set<Long> ids = new HashSet<>();
+        while (ids.size() < size) {
+            ids.add((long) random.nextInt(Math.max(bound, size * 2)));
+        }
+        return new IdSet(ids);
+    }
+}
@@ -0,0 +1,274 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.JdbcFilmStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.JdbcUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// хранилища в базе данных на встроенной H2 в памяти
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:filmorate-test;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("h2")
+public class JdbcStorageTests {
+    @Autowired
+    FilmStorage filmStorage;
+    @Autowired
+    UserStorage userStorage;
+    @Autowired
+    FilmService filmService;
+    @Autowired
+    UserService userService;
+
+    @Test
+    void shouldUseJdbcStorages() {
+        assertInstanceOf(JdbcFilmStorage.class, filmStorage);
+        assertInstanceOf(JdbcUserStorage.class, userStorage);
+    }
+
+    @Test
+    void shouldCreateAndPartiallyUpdateEntities() {
+        Film film = filmService.create(newFilm("matrix"));
+        Film update = newFilm("matrix reloaded");
+        update.setId(film.getId());
+        update.setDescription(null);
+        Film updated = filmService.update(update);
+        assertEquals("matrix reloaded", updated.getName());
+        assertEquals("description", updated.getDescription());
+
+        User user = newUser("neo");
+        user.setName(" ");
+        User created = userService.create(user);
+        assertEquals("neo", created.getName());
+        User userUpdate = newUser("thomas");
+        userUpdate.setId(created.getId());
+        userUpdate.setName(null);
+        assertEquals("thomas", userService.update(userUpdate).getLogin());
+        assertEquals("neo", userService.findById(created.getId()).getName());
+
+        Film missing = newFilm("missing");
+        missing.setId(999_999L);
+        assertThrows(NotFoundException.class, () -> filmService.update(missing));
+    }
+
+    @Test
+    void shouldRankPopularFilmsAndKeepLikeCountsAfterUserDelete() {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            userIds.add(userService.create(newUser("fan" + i)).getId());
+        }
+        Film first = filmService.create(newFilm("first"));
+        Film second = filmService.create(newFilm("second"));
+        filmService.addLike(second.getId(), userIds.get(0));
+        filmService.addLike(second.getId(), userIds.get(1));
+        filmService.addLike(first.getId(), userIds.get(2));
+        filmService.addLike(first.getId(), userIds.get(2));
+
+        assertEquals(2, filmService.findById(second.getId()).getLikes().size());
+        // база общая для всех проверок, поэтому сравниваем только взаимный порядок
+        List<Long> popular = popularIds();
+        assertTrue(popular.indexOf(second.getId()) < popular.indexOf(first.getId()));
+
+        // после удаления пользователей у второго фильма остаётся 0 лайков, у первого - 1
+        userService.delete(userIds.get(0));
+        userService.delete(userIds.get(1));
+        assertTrue(filmService.findById(second.getId()).getLikes().isEmpty());
+        popular = popularIds();
+        assertTrue(popular.indexOf(first.getId()) < popular.indexOf(second.getId()));
+
+        assertThrows(NotFoundException.class, () -> filmStorage.addLike(999_999L, userIds.get(2)));
+    }
+
+    @Test
+    void shouldFindCommonFriendsInDatabase() {
+        User alpha = userService.create(newUser("alpha"));
+        User beta = userService.create(newUser("beta"));
+        User gamma = userService.create(newUser("gamma"));
+        User delta = userService.create(newUser("delta"));
+        userService.addFriend(alpha.getId(), gamma.getId());
+        userService.addFriend(beta.getId(), gamma.getId());
+        userService.addFriend(alpha.getId(), delta.getId());
+
+        assertTrue(userService.findById(gamma.getId()).getFriends().contains(alpha.getId()));
+        assertEquals(List.of(gamma.getId()), userService.getCommonFriends(alpha.getId(), beta.getId())
+                .stream().map(User::getId).toList());
+        assertEquals(1, userService.countCommonFriends(alpha.getId(), beta.getId()));
+
+        userService.removeFriend(gamma.getId(), beta.getId());
+        assertTrue(userService.getCommonFriends(alpha.getId(), beta.getId()).isEmpty());
+        assertThrows(NotFoundException.class, () -> userStorage.link(alpha.getId(), 999_999L));
+    }
+
+    @Test
+    void shouldBumpVersionsOnEveryChange() {
+        User alpha = userService.create(newUser("versioned-alpha"));
+        User beta = userService.create(newUser("versioned-beta"));
+        Film film = filmService.create(newFilm("versioned"));
+
+        filmService.addLike(film.getId(), alpha.getId());
+        assertEquals(film.getVersion() + 1, version(film));
+        filmService.update(film);
+        assertEquals(film.getVersion() + 2, version(film));
+
+        userService.addFriend(alpha.getId(), beta.getId());
+        assertEquals(alpha.getVersion() + 1, version(alpha));
+        assertEquals(beta.getVersion() + 1, version(beta));
+        // список друзей беты и лайки фильма меняются каскадным удалением альфы
+        userService.delete(alpha.getId());
+        assertEquals(beta.getVersion() + 2, version(beta));
+        assertEquals(film.getVersion() + 3, version(film));
+    }
+
+    @Test
+    void shouldLoadManyUsersWithFriendsInBulk() {
+        List<Long> ids = new ArrayList<>();
+        for (User user : userStorage.createAll(IntStream.range(0, 1500)
+                .mapToObj(i -> newUser("bulk" + i)).toList())) {
+            ids.add(user.getId());
+        }
+        userService.addFriend(ids.get(0), ids.get(1499));
+        List<Long> requested = new ArrayList<>(ids.reversed());
+        requested.add(1, 999_999L);
+
+        List<User> found = userStorage.findAllByIds(requested);
+        assertEquals(ids.reversed(), found.stream().map(User::getId).toList());
+        assertEquals(List.of(ids.get(1499)), List.copyOf(found.getLast().getFriends()));
+        assertEquals(List.of(ids.get(0)), userService.getAllFriends(ids.get(1499)).stream().map(User::getId).toList());
+    }
+
+    @Test
+    void shouldNotLoseConcurrentBatchedLikes() throws Exception {
+        Film film = filmService.create(newFilm("crowded"));
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            userIds.add(userService.create(newUser("crowd" + i)).getId());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Long userId : userIds) {
+                futures.add(executor.submit(() -> filmService.addLike(film.getId(), userId)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(userIds.size(), filmService.findById(film.getId()).getLikes().size());
+        assertEquals(film.getId(), filmStorage.getPopular(1).getFirst().getId());
+    }
+
+    @Test
+    void shouldKeepLikeCountsWhenLikesArriveDuringRemoval() throws Exception {
+        Long userId = userService.create(newUser("restless")).getId();
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            filmIds.add(filmService.create(newFilm("restless" + i)).getId());
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> liker = executor.submit(() -> filmIds.forEach(filmId -> filmStorage.addLike(filmId, userId)));
+            while (!liker.isDone()) {
+                filmStorage.removeLikesOf(userId);
+            }
+            liker.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        filmStorage.removeLikesOf(userId);
+        // счётчик каждого фильма совпадает с его лайками: снятый лайк вычтен ровно один раз
+        for (Long filmId : filmIds) {
+            assertEquals(0, filmStorage.countLikes(filmId));
+            assertTrue(filmStorage.findById(filmId).orElseThrow().getLikes().isEmpty());
+        }
+    }
+
+    @Test
+    void shouldApplyBatchesInDatabase() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(newUser("batch" + i));
+        }
+        List<Long> userIds = userService.createAll(users).stream().map(BatchResult::id).toList();
+        assertEquals(5, userIds.stream().distinct().count());
+        Long filmId = filmService.createAll(List.of(newFilm("batch"))).getFirst().id();
+
+        List<BatchResult> likes = filmService.addLikes(List.of(new Like(filmId, userIds.get(0)),
+                new Like(filmId, userIds.get(1)), new Like(filmId, userIds.get(0)), new Like(999_999L, userIds.get(2))));
+        assertEquals(List.of(BatchStatus.OK, BatchStatus.OK, BatchStatus.UNCHANGED, BatchStatus.NOT_FOUND),
+                likes.stream().map(BatchResult::status).toList());
+        assertEquals(2, filmService.findById(filmId).getLikes().size());
+
+        List<BatchResult> friends = userService.addFriends(List.of(new Friendship(userIds.get(0), userIds.get(1)),
+                new Friendship(userIds.get(1), userIds.get(0)), new Friendship(userIds.get(2), 999_999L)));
+        assertEquals(List.of(BatchStatus.OK, BatchStatus.UNCHANGED, BatchStatus.NOT_FOUND),
+                friends.stream().map(BatchResult::status).toList());
+    }
+
+    @Test
+    void shouldRecommendFilmsFromLikesInDatabase() {
+        User first = userService.create(newUser("cf-first"));
+        User similar = userService.create(newUser("cf-similar"));
+        Long shared = filmService.create(newFilm("shared")).getId();
+        Long recommended = filmService.create(newFilm("recommended")).getId();
+        filmService.addLikes(List.of(new Like(shared, first.getId()), new Like(shared, similar.getId()),
+                new Like(recommended, similar.getId())));
+
+        assertArrayEquals(new long[]{shared, recommended}, filmStorage.findLikedFilmIds(similar.getId()));
+        assertEquals(List.of(recommended), filmService.getFilmRecommendations(first.getId(), null).stream()
+                .map(Film::getId).toList());
+        filmService.removeLike(recommended, similar.getId());
+        assertTrue(filmService.getFilmRecommendations(first.getId(), null).isEmpty());
+    }
+
+    private List<Long> popularIds() {
+        return filmStorage.getPopular(Integer.MAX_VALUE).stream().map(Film::getId).toList();
+    }
+
+    private Film newFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2002, 4, 14));
+        film.setDuration(125);
+        return film;
+    }
+
+    private long version(Film film) {
+        return filmStorage.findById(film.getId()).orElseThrow().getVersion();
+    }
+
+    private long version(User user) {
+        return userStorage.findById(user.getId()).orElseThrow().getVersion();
+    }
+
+    private User newUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
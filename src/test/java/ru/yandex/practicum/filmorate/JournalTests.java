@@ -0,0 +1,252 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledFilmStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledUserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// восстановление хранилищ из снимка и журнала после перезапуска
+public class JournalTests {
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRestoreStateFromSnapshotAndJournalTail() throws Exception {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        StorageJournal journal = StorageJournal.open(directory, true, films, users);
+        JournaledFilmStorage filmStorage = new JournaledFilmStorage(films, journal);
+        JournaledUserStorage userStorage = new JournaledUserStorage(users, journal);
+
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            userIds.add(userStorage.create(newUser("user" + i)).getId());
+        }
+        Long filmId = filmStorage.create(newFilm("first")).getId();
+        filmStorage.addLike(filmId, userIds.get(0));
+        filmStorage.addLike(filmId, userIds.get(1));
+        userStorage.link(userIds.get(0), userIds.get(1));
+        userStorage.link(userIds.get(0), userIds.get(2));
+
+        journal.snapshot(films, users);
+
+        // изменения после снимка должны восстановиться из журнала
+        Long secondFilmId = filmStorage.create(newFilm("second")).getId();
+        filmStorage.addLike(secondFilmId, userIds.get(3));
+        filmStorage.removeLike(filmId, userIds.get(0));
+        Film update = newFilm("first renamed");
+        update.setId(filmId);
+        filmStorage.update(update);
+        userStorage.unlink(userIds.get(0), userIds.get(2));
+        userStorage.link(userIds.get(4), userIds.get(5));
+        userStorage.delete(userIds.get(9));
+        journal.close();
+
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage();
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage();
+        StorageJournal reopened = StorageJournal.open(directory, true, restoredFilms, restoredUsers);
+        try {
+            assertEquals(List.copyOf(films.findAll()), List.copyOf(restoredFilms.findAll()));
+            assertEquals(List.copyOf(users.findAll()), List.copyOf(restoredUsers.findAll()));
+            assertEquals("first renamed", restoredFilms.findById(filmId).orElseThrow().getName());
+            assertEquals(films.countLikes(), restoredFilms.countLikes());
+            assertEquals(users.countFriendships(), restoredUsers.countFriendships());
+            assertEquals(films.getPopular(10), restoredFilms.getPopular(10));
+            // новые id продолжают старые
+            assertEquals(secondFilmId + 1, restoredFilms.create(newFilm("third")).getId());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void shouldNotReuseIdsOfEntitiesDeletedBeforeSnapshot() throws Exception {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        StorageJournal journal = StorageJournal.open(directory, true, films, users);
+        JournaledFilmStorage filmStorage = new JournaledFilmStorage(films, journal);
+        JournaledUserStorage userStorage = new JournaledUserStorage(users, journal);
+        userStorage.create(newUser("kept"));
+        Long deletedUserId = userStorage.create(newUser("deleted")).getId();
+        filmStorage.create(newFilm("kept"));
+        Long deletedFilmId = filmStorage.create(newFilm("deleted")).getId();
+        userStorage.delete(deletedUserId);
+        filmStorage.delete(deletedFilmId);
+        // старые сегменты с созданием удалённых объектов после снимка удаляются
+        journal.snapshot(films, users);
+        journal.close();
+
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage();
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage();
+        StorageJournal reopened = StorageJournal.open(directory, true, restoredFilms, restoredUsers);
+        try {
+            assertEquals(1, restoredFilms.count());
+            assertEquals(1, restoredUsers.count());
+            assertEquals(deletedFilmId + 1, restoredFilms.create(newFilm("next")).getId());
+            assertEquals(deletedUserId + 1, restoredUsers.create(newUser("next")).getId());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void shouldRestoreLikesAndFriendsAddedRightAfterCreation() throws Exception {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        StorageJournal journal = StorageJournal.open(directory, false, films, users);
+        JournaledFilmStorage filmStorage = new JournaledFilmStorage(films, journal);
+        JournaledUserStorage userStorage = new JournaledUserStorage(users, journal);
+        Long fanId = userStorage.create(newUser("fan")).getId();
+
+        // лайки и дружба ставятся, как только объект появился в памяти, - между созданием и его записью.
+        // ожидающих несколько, чтобы кто-то из них был свободен, пока остальные ждут записи журнала
+        int count = 1000;
+        int workers = 4;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            int first = w + 1;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (long id = first; id <= count; id += workers) {
+                    while (films.findById(id).isEmpty()) {
+                        Thread.onSpinWait();
+                    }
+                    filmStorage.addLike(id, fanId);
+                }
+            }));
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (long id = fanId + first; id <= fanId + count; id += workers) {
+                    while (users.findById(id).isEmpty()) {
+                        Thread.onSpinWait();
+                    }
+                    userStorage.link(fanId, id);
+                }
+            }));
+        }
+        for (int i = 0; i < count; i++) {
+            userStorage.create(newUser("friend" + i));
+            filmStorage.create(newFilm("film" + i));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        journal.close();
+
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage();
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage();
+        StorageJournal.open(directory, false, restoredFilms, restoredUsers).close();
+        assertEquals(count, restoredFilms.countLikes());
+        assertEquals(count, restoredUsers.countFriendships());
+        assertEquals(List.copyOf(films.findAll()), List.copyOf(restoredFilms.findAll()));
+        assertEquals(List.copyOf(users.findAll()), List.copyOf(restoredUsers.findAll()));
+    }
+
+    @Test
+    void shouldIgnoreTornTailOfJournal() throws Exception {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        StorageJournal journal = StorageJournal.open(directory, false, films, users);
+        JournaledUserStorage userStorage = new JournaledUserStorage(users, journal);
+        userStorage.create(newUser("alpha"));
+        userStorage.create(newUser("beta"));
+        journal.close();
+
+        // запись, оборванная при сбое: заголовок без данных
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().startsWith("journal-"))
+                    .sorted().reduce((first, second) -> second).orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 50, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage();
+        StorageJournal reopened = StorageJournal.open(directory, false, new InMemoryFilmStorage(), restoredUsers);
+        reopened.close();
+        assertEquals(2, restoredUsers.count());
+    }
+
+    @Test
+    void shouldRejectChangesWithoutTouchingMemoryAfterJournalFailure() throws Exception {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        StorageJournal journal = StorageJournal.open(directory, true, films, users);
+        JournaledFilmStorage filmStorage = new JournaledFilmStorage(films, journal);
+        JournaledUserStorage userStorage = new JournaledUserStorage(users, journal);
+        Long userId = userStorage.create(newUser("before")).getId();
+        Long friendId = userStorage.create(newUser("friend")).getId();
+        Long filmId = filmStorage.create(newFilm("before")).getId();
+
+        // место следующего сегмента занято каталогом: переключение сегмента ломает журнал
+        try (Stream<Path> segments = Files.list(directory)) {
+            String current = segments.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("journal-")).findFirst().orElseThrow();
+            long number = Long.parseLong(current.substring("journal-".length(), current.length() - ".log".length()));
+            Files.createDirectory(directory.resolve(String.format("journal-%020d.log", number + 1)));
+        }
+        assertThrows(Exception.class, () -> journal.snapshot(films, users));
+
+        List<Film> filmsBefore = List.copyOf(films.findAll());
+        List<User> usersBefore = List.copyOf(users.findAll());
+        assertThrows(UncheckedIOException.class, () -> filmStorage.create(newFilm("after")));
+        assertThrows(UncheckedIOException.class, () -> filmStorage.addLike(filmId, userId));
+        assertThrows(UncheckedIOException.class,
+                () -> filmStorage.addLikes(List.of(new Like(filmId, friendId))));
+        assertThrows(UncheckedIOException.class, () -> filmStorage.delete(filmId));
+        assertThrows(UncheckedIOException.class, () -> userStorage.create(newUser("after")));
+        assertThrows(UncheckedIOException.class, () -> userStorage.link(userId, friendId));
+        assertThrows(UncheckedIOException.class, () -> userStorage.delete(friendId));
+        assertEquals(filmsBefore, List.copyOf(films.findAll()));
+        assertEquals(usersBefore, List.copyOf(users.findAll()));
+        assertEquals(0, films.countLikes());
+        assertEquals(0, users.countFriendships());
+        journal.close();
+    }
+
+    @Test
+    void shouldRefuseJournalWithShardedStorage() {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(FilmorateApplication.class);
+        // аргументами, а не properties(): те лишь значения по умолчанию под application.properties
+        Throwable error = assertThrows(Exception.class, () -> application.run("--spring.main.web-application-type=none",
+                "--filmorate.storage.type=sharded", "--filmorate.storage.journal.enabled=true",
+                "--filmorate.storage.journal.directory=" + directory));
+        while (error.getCause() != null) {
+            error = error.getCause();
+        }
+        assertInstanceOf(IllegalStateException.class, error);
+        assertTrue(error.getMessage().contains("filmorate.storage.type=memory"));
+    }
+
+    private Film newFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2002, 4, 14));
+        film.setDuration(125);
+        return film;
+    }
+
+    private User newUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.controller.NdjsonStreamer;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// проверки списков через HTTP: обычный JSON, страницы и потоковая выгрузка NDJSON
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ListingApiTests {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserStorage userStorage;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void shouldListPageAndStreamUsers() throws Exception {
+        long before = userStorage.findAll().size();
+        for (int i = 0; i < 1200; i++) {
+            User user = new User();
+            user.setEmail("stream" + i + "@mail.ru");
+            user.setLogin("stream" + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            userStorage.create(user);
+        }
+
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(before + 1200));
+
+        mockMvc.perform(get("/users").param("after", "0").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1));
+
+        MvcResult started = mockMvc.perform(get("/users").accept(NdjsonStreamer.NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(before + 1200, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,"));
+        long previous = 0;
+        for (int i = 0; i < lines.length; i++) {
+            assertTrue(lines[i].startsWith("{"), "строка " + i + ": " + lines[i]);
+            long id = objectMapper.readValue(lines[i], User.class).getId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsApiTests {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void shouldExposeServiceTimersAndErrorCounters() throws Exception {
+        mockMvc.perform(get("/films/popular")).andExpect(status().isOk());
+        mockMvc.perform(get("/films/100500"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.error").value("Объект не найден"));
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "filmorate_service_seconds_bucket{class=\"ru.yandex.practicum.filmorate.service.FilmService\"")))
+                .andExpect(content().string(containsString("method=\"getPopular\"")))
+                .andExpect(content().string(containsString("filmorate_errors_total{type=\"not_found\",}")))
+                .andExpect(content().string(containsString("filmorate_films ")))
+                .andExpect(content().string(containsString("filmorate_friendships ")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"filmorate.reads\"")))
+                .andExpect(content().string(containsString("cache_evictions_total{cache=\"filmorate.reads\"")));
+    }
+}
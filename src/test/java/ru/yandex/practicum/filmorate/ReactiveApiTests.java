@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.controller.NdjsonStreamer;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ReactiveFilmService;
+import ru.yandex.practicum.filmorate.service.ReactiveUserService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// тот же API на WebFlux: CRUD, ETag, ошибки и потоковые выгрузка и загрузка NDJSON
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+public class ReactiveApiTests {
+    @Autowired
+    WebTestClient client;
+    @Autowired
+    ReactiveFilmService filmService;
+    @Autowired
+    ReactiveUserService userService;
+
+    @Test
+    void shouldServeFilmsWithLikesAndEtags() {
+        Film film = client.post().uri("/films").bodyValue(newFilm())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Film.class).returnResult().getResponseBody();
+        assertNotNull(film);
+        User user = createUser("reactive-fan");
+
+        String etag = client.get().uri("/films/" + film.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Film.class).getResponseHeaders().getETag();
+        assertNotNull(etag);
+        client.get().uri("/films/" + film.getId()).header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        client.put().uri("/films/" + film.getId() + "/like/" + user.getId())
+                .exchange()
+                .expectStatus().isOk();
+        client.get().uri("/films/" + film.getId()).header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.likes[0]").isEqualTo(user.getId());
+        client.get().uri("/users/" + user.getId() + "/likes")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[0].id").isEqualTo(film.getId());
+    }
+
+    @Test
+    void shouldAnswerNotFoundAndBadRequest() {
+        client.get().uri("/films/999999")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.error").isEqualTo("Объект не найден");
+        client.put().uri("/users/999999/friends/999998")
+                .exchange()
+                .expectStatus().isNotFound();
+        client.get().uri("/films/popular?count=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+        client.post().uri("/films").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\":\"nulls\",\"description\":\"d\",\"releaseDate\":\"2002-04-14\",\"duration\":125,\"likes\":[null]}")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void shouldIngestAndStreamUsersAsNdjson() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1200; i++) {
+            body.append("{\"email\":\"flux").append(i).append("@mail.ru\",\"login\":\"flux").append(i)
+                    .append("\",\"birthday\":\"2000-01-01\"}\n");
+        }
+        body.append("not json\n");
+        List<BatchResult> results = client.post().uri("/users/batch")
+                .contentType(MediaType.parseMediaType(NdjsonStreamer.NDJSON))
+                .bodyValue(body.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BatchResult.class).returnResult().getResponseBody();
+        assertNotNull(results);
+        assertEquals(1201, results.size());
+        assertEquals(BatchStatus.OK, results.get(0).status());
+        assertEquals(BatchStatus.INVALID, results.get(1200).status());
+
+        List<User> streamed = client.get().uri("/users")
+                .accept(MediaType.parseMediaType(NdjsonStreamer.NDJSON))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.parseMediaType(NdjsonStreamer.NDJSON))
+                .returnResult(User.class).getResponseBody()
+                .collectList().block();
+        assertNotNull(streamed);
+        assertTrue(streamed.size() >= 1200);
+        for (int i = 1; i < streamed.size(); i++) {
+            assertTrue(streamed.get(i - 1).getId() < streamed.get(i).getId());
+        }
+    }
+
+    @Test
+    void shouldRunListingsAndRecommendationsOffEventLoopInMemory() {
+        User user = createUser("reactive-bulk");
+        client.post().uri("/films").bodyValue(newFilm())
+                .exchange()
+                .expectStatus().isOk();
+
+        assertTrue(completedOn(filmService.findAll()).startsWith("boundedElastic"));
+        assertTrue(completedOn(filmService.streamAll()).startsWith("boundedElastic"));
+        assertTrue(completedOn(filmService.getFilmRecommendations(user.getId(), 10)).startsWith("boundedElastic"));
+        assertTrue(completedOn(userService.findAll()).startsWith("boundedElastic"));
+        assertTrue(completedOn(userService.getFriendRecommendations(user.getId(), 10)).startsWith("boundedElastic"));
+    }
+
+    // поток, в котором вызов сервиса завершился
+    private String completedOn(Flux<?> call) {
+        return call.then(Mono.fromCallable(() -> Thread.currentThread().getName())).block();
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return client.post().uri("/users").bodyValue(user)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class).returnResult().getResponseBody();
+    }
+
+    private Film newFilm() {
+        Film film = new Film();
+        film.setName("reactive");
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2002, 4, 14));
+        film.setDuration(125);
+        return film;
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReadCache;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadCacheTests {
+    SimpleMeterRegistry registry;
+    FilmService filmService;
+    UserService userService;
+    List<Long> films;
+    List<Long> users;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        ReadCache readCache = new ReadCache(10_000);
+        registry = new SimpleMeterRegistry();
+        readCache.bindTo(registry);
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        filmService = new FilmService(filmStorage, userStorage, readCache);
+        userService = new UserService(userStorage, filmStorage, readCache);
+        films = new ArrayList<>();
+        users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            films.add(filmService.create(film).getId());
+            User user = new User();
+            user.setEmail("user" + i + "@mail.ru");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            users.add(userService.create(user).getId());
+        }
+    }
+
+    @Test
+    void shouldRefreshPopularAfterLikeThatChangesRanking() {
+        filmService.addLike(films.get(0), users.get(0));
+        assertEquals(films.get(0), filmService.getPopular(2).get(0).getId());
+
+        filmService.addLike(films.get(3), users.get(0));
+        filmService.addLike(films.get(3), users.get(1));
+        assertEquals(List.of(films.get(3), films.get(0)), filmService.getPopular(2).stream().map(Film::getId).toList());
+
+        filmService.removeLike(films.get(3), users.get(0));
+        filmService.removeLike(films.get(3), users.get(1));
+        assertEquals(films.get(0), filmService.getPopular(2).get(0).getId());
+    }
+
+    @Test
+    void shouldKeepPopularWhenLikedFilmCannotEnterIt() {
+        filmService.addLike(films.get(0), users.get(0));
+        filmService.addLike(films.get(0), users.get(1));
+        filmService.addLike(films.get(1), users.get(0));
+        filmService.addLike(films.get(1), users.get(1));
+        filmService.getPopular(2);
+
+        // у фильма станет 1 лайк против 2 у последнего в списке
+        filmService.addLike(films.get(4), users.get(2));
+        filmService.getPopular(2);
+        assertEquals(1, hits());
+
+        // при равенстве лайков выше фильм с меньшим id
+        filmService.addLike(films.get(4), users.get(3));
+        filmService.getPopular(2);
+        assertEquals(2, hits());
+
+        filmService.addLike(films.get(4), users.get(4));
+        assertEquals(films.get(4), filmService.getPopular(2).get(0).getId());
+        assertEquals(2, hits());
+    }
+
+    @Test
+    void shouldInvalidateOnlyAffectedFriendLists() {
+        userService.addFriend(users.get(0), users.get(1));
+        userService.addFriend(users.get(2), users.get(3));
+        assertEquals(1, userService.getAllFriends(users.get(0)).size());
+        assertEquals(1, userService.getAllFriends(users.get(2)).size());
+
+        userService.addFriend(users.get(2), users.get(4));
+        assertEquals(1, userService.getAllFriends(users.get(0)).size());
+        assertEquals(1, hits());
+        assertEquals(2, userService.getAllFriends(users.get(2)).size());
+        assertEquals(1, hits());
+    }
+
+    @Test
+    void shouldRefreshCommonFriendsInBothDirections() {
+        userService.addFriend(users.get(0), users.get(2));
+        userService.addFriend(users.get(1), users.get(2));
+        assertEquals(1, userService.getCommonFriends(users.get(0), users.get(1)).size());
+        assertEquals(1, userService.getCommonFriends(users.get(1), users.get(0)).size());
+        assertEquals(1, hits());
+
+        userService.addFriend(users.get(1), users.get(3));
+        userService.addFriend(users.get(3), users.get(0));
+        assertEquals(2, userService.getCommonFriends(users.get(1), users.get(0)).size());
+
+        userService.removeFriend(users.get(2), users.get(0));
+        assertEquals(List.of(users.get(3)), userService.getCommonFriends(users.get(0), users.get(1)).stream()
+                .map(User::getId).toList());
+    }
+
+    @Test
+    void shouldNotServeDeletedFilm() {
+        filmService.findById(films.get(0));
+        filmService.findById(films.get(0));
+        assertEquals(1, hits());
+
+        filmService.delete(films.get(0));
+        assertThrows(NotFoundException.class, () -> filmService.findById(films.get(0)));
+    }
+
+    private double hits() {
+        return registry.get("cache.gets").tag("result", "hit").functionCounter().count();
+    }
+}
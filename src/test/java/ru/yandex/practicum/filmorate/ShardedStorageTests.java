@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.sharded.ShardedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.sharded.ShardedUserStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// хранилища в памяти, разложенные по нескольким шардам внутри процесса
+@SpringBootTest(properties = {"filmorate.storage.type=sharded", "filmorate.storage.shards=4"})
+public class ShardedStorageTests {
+    @Autowired
+    FilmStorage filmStorage;
+    @Autowired
+    UserStorage userStorage;
+    @Autowired
+    FilmService filmService;
+    @Autowired
+    UserService userService;
+
+    ShardedFilmStorage films;
+    ShardedUserStorage users;
+
+    @BeforeEach
+    void setUp() {
+        films = new ShardedFilmStorage(4);
+        users = new ShardedUserStorage(4);
+    }
+
+    @Test
+    void shouldUseShardedStorages() {
+        assertInstanceOf(ShardedFilmStorage.class, filmStorage);
+        assertInstanceOf(ShardedUserStorage.class, userStorage);
+    }
+
+    @Test
+    void shouldSpreadIdsAndMergePagesInIdOrder() {
+        Set<Integer> used = new HashSet<>();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            User user = users.create(newUser("spread" + i));
+            used.add(users.shardOf(user.getId()));
+            ids.add(user.getId());
+        }
+        assertEquals(4, used.size());
+        assertEquals(40, users.count());
+        assertEquals(ids, users.findAll().stream().map(User::getId).toList());
+        assertEquals(ids.subList(10, 15), users.findPage(ids.get(9), 5).stream().map(User::getId).toList());
+        assertEquals(List.of(ids.get(7), ids.get(3)),
+                users.findAllByIds(List.of(ids.get(7), -1L, ids.get(3))).stream().map(User::getId).toList());
+    }
+
+    @Test
+    void shouldKeepFriendshipsBetweenShards() {
+        List<User> created = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            created.add(users.create(newUser("friend" + i)));
+        }
+        User user = created.get(0);
+        User other = created.stream().filter(u -> users.shardOf(u.getId()) != users.shardOf(user.getId()))
+                .findFirst().orElseThrow();
+        List<Long> common = new ArrayList<>();
+        for (User friend : created) {
+            if (friend == user || friend == other)
+                continue;
+            assertTrue(users.link(user.getId(), friend.getId()));
+            if (common.size() < 3) {
+                users.link(other.getId(), friend.getId());
+                common.add(friend.getId());
+            }
+        }
+        assertTrue(users.link(user.getId(), other.getId()));
+        assertFalse(users.link(other.getId(), user.getId()));
+        assertEquals(10, users.countFriendships());
+
+        assertEquals(common, users.findCommonFriends(user.getId(), other.getId()).stream().map(User::getId).toList());
+        assertEquals(3, users.countCommonFriends(other.getId(), user.getId()));
+        assertThrows(NotFoundException.class, () -> users.link(user.getId(), 1_000L));
+        assertEquals(10, users.countFriendships());
+
+        // удаление убирает стороны дружбы и в чужих шардах
+        users.delete(other.getId());
+        assertEquals(6, users.countFriendships());
+        assertFalse(users.findById(user.getId()).orElseThrow().getFriends().contains(other.getId()));
+        assertTrue(users.findById(common.get(0)).orElseThrow().getFriends().contains(user.getId()));
+        assertFalse(users.findById(common.get(0)).orElseThrow().getFriends().contains(other.getId()));
+    }
+
+    @Test
+    void shouldMergePopularLikeSingleStorage() {
+        InMemoryFilmStorage single = new InMemoryFilmStorage();
+        Random random = new Random(42);
+        for (int i = 0; i < 50; i++) {
+            films.create(newFilm("film" + i));
+            single.create(newFilm("film" + i));
+        }
+        for (int i = 0; i < 400; i++) {
+            long filmId = 1 + random.nextInt(50);
+            long userId = 1 + random.nextInt(30);
+            assertEquals(single.addLike(filmId, userId), films.addLike(filmId, userId));
+        }
+        for (int count : new int[]{1, 10, 50, 100}) {
+            assertEquals(ids(single.getPopular(count)), ids(films.getPopular(count)));
+        }
+        assertEquals(single.countLikes(), films.countLikes());
+
+        // лайки пользователя собираются из всех шардов
+        assertArrayEquals(single.findLikedFilmIds(7L), films.findLikedFilmIds(7L));
+        assertArrayEquals(single.removeLikesOf(7L), films.removeLikesOf(7L));
+        assertEquals(ids(single.getPopular(10)), ids(films.getPopular(10)));
+    }
+
+    @Test
+    void shouldServeCommonFriendsAndPopularThroughServices() {
+        User alpha = userService.create(newUser("sharded-alpha"));
+        User beta = userService.create(newUser("sharded-beta"));
+        User gamma = userService.create(newUser("sharded-gamma"));
+        userService.addFriend(alpha.getId(), gamma.getId());
+        userService.addFriend(beta.getId(), gamma.getId());
+        assertEquals(List.of(gamma.getId()),
+                userService.getCommonFriends(alpha.getId(), beta.getId()).stream().map(User::getId).toList());
+
+        Film first = filmService.create(newFilm("sharded-first"));
+        Film second = filmService.create(newFilm("sharded-second"));
+        filmService.addLike(second.getId(), alpha.getId());
+        filmService.addLike(second.getId(), beta.getId());
+        filmService.addLike(first.getId(), gamma.getId());
+        List<Long> popular = ids(filmService.getPopular(1000));
+        assertTrue(popular.indexOf(second.getId()) < popular.indexOf(first.getId()));
+    }
+
+    private static List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+
+    private static Film newFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2002, 4, 14));
+        film.setDuration(125);
+        return film;
+    }
+
+    private static User newUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}
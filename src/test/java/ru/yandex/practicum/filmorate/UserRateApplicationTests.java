@@ -1,30 +1,50 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.controller.NdjsonStreamer;
 import ru.yandex.practicum.filmorate.controller.UserController;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReadCache;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
 import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class UserRateApplicationTests {
     UserController controller;
     UserService userService;
+    FilmService filmService;
     UserStorage userStorage;
+    FilmStorage filmStorage;
     User user;
 
     @BeforeEach
     public void setUp() {
         userStorage = new InMemoryUserStorage();
-        userService = new UserService(userStorage);
-        controller = new UserController(userService);
+        ReadCache readCache = new ReadCache(10_000);
+        filmStorage = new InMemoryFilmStorage();
+        userService = new UserService(userStorage, filmStorage, readCache);
+        filmService = new FilmService(filmStorage, userStorage, readCache);
+        controller = new UserController(userService, filmService, new NdjsonStreamer(new ObjectMapper()));
         user = new User();
         user.setEmail("dxdkymis@mail.ru");
         user.setLogin("alpha");
@@ -127,4 +147,224 @@ public class UserRateApplicationTests {
         user.setBirthday(LocalDate.now());
         assertDoesNotThrow(() -> controller.create(user));
     }
+
+    @Test
+    void shouldLinkAndUnlinkFriendsOnBothSides() {
+        User first = controller.create(user);
+        User second = controller.create(newUser("beta"));
+
+        assertTrue(userStorage.link(first.getId(), second.getId()));
+        // повторное добавление ничего не меняет
+        assertFalse(userStorage.link(second.getId(), first.getId()));
+        assertEquals(List.of(current(second)), controller.getAllFriends(first.getId(), request()).getBody());
+        assertEquals(List.of(current(first)), controller.getAllFriends(second.getId(), request()).getBody());
+
+        controller.removeFriend(second.getId(), first.getId());
+        assertTrue(controller.getAllFriends(first.getId(), request()).getBody().isEmpty());
+        assertTrue(controller.getAllFriends(second.getId(), request()).getBody().isEmpty());
+        assertFalse(userStorage.unlink(first.getId(), second.getId()));
+    }
+
+    @Test
+    void shouldReturnNotFoundWhenFriendMissing() {
+        User first = controller.create(user);
+        assertThrows(NotFoundException.class, () -> controller.addFriend(first.getId(), 999L));
+        assertThrows(NotFoundException.class, () -> controller.addFriend(999L, first.getId()));
+        assertTrue(first.getFriends().isEmpty());
+    }
+
+    @Test
+    void shouldReturnCommonFriends() {
+        User first = controller.create(user);
+        User second = controller.create(newUser("beta"));
+        User common = controller.create(newUser("gamma"));
+        User other = controller.create(newUser("delta"));
+        controller.addFriend(first.getId(), common.getId());
+        controller.addFriend(second.getId(), common.getId());
+        controller.addFriend(first.getId(), other.getId());
+
+        assertEquals(List.of(current(common)), controller.getCommonFriends(first.getId(), second.getId(), request()).getBody());
+        assertEquals(1, controller.countCommonFriends(second.getId(), first.getId()));
+        assertEquals(0, controller.countCommonFriends(other.getId(), second.getId()));
+    }
+
+    @Test
+    void shouldDropDeletedUserFromFriendLists() {
+        User first = controller.create(user);
+        User second = controller.create(newUser("beta"));
+        User third = controller.create(newUser("gamma"));
+        controller.addFriend(first.getId(), second.getId());
+        controller.addFriend(first.getId(), third.getId());
+
+        userService.delete(second.getId());
+        assertEquals(List.of(current(third)), controller.getAllFriends(first.getId(), request()).getBody());
+        assertEquals(List.of(third.getId()), List.copyOf(current(first).getFriends()));
+        assertEquals(1, userStorage.countFriendships());
+    }
+
+    @Test
+    void shouldNotCountFriendshipTwiceWhenBothUsersAreDeleted() {
+        User first = controller.create(user);
+        User second = controller.create(newUser("beta"));
+        controller.addFriend(first.getId(), second.getId());
+
+        userService.delete(first.getId());
+        assertTrue(current(second).getFriends().isEmpty());
+        assertEquals(0, userStorage.countFriendships());
+        userService.delete(second.getId());
+        assertEquals(0, userStorage.countFriendships());
+    }
+
+    @Test
+    void shouldFindAllByIdsInRequestedOrderSkippingMissing() {
+        User first = controller.create(user);
+        User second = controller.create(newUser("beta"));
+        assertEquals(List.of(second, first), userStorage.findAllByIds(List.of(second.getId(), 999L, first.getId())));
+        assertTrue(userStorage.findAllByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void shouldRecommendFriendsOfFriendsByMutualFriends() {
+        User first = controller.create(user);
+        List<User> friends = List.of(controller.create(newUser("beta")), controller.create(newUser("gamma")),
+                controller.create(newUser("delta")));
+        User three = controller.create(newUser("three"));
+        User one = controller.create(newUser("one"));
+        User two = controller.create(newUser("two"));
+        for (User friend : friends) {
+            controller.addFriend(first.getId(), friend.getId());
+            controller.addFriend(three.getId(), friend.getId());
+        }
+        controller.addFriend(one.getId(), friends.get(0).getId());
+        controller.addFriend(two.getId(), friends.get(0).getId());
+        controller.addFriend(two.getId(), friends.get(1).getId());
+
+        // сам пользователь и его друзья в рекомендации не попадают
+        assertEquals(List.of(new FriendRecommendation(current(three), 3), new FriendRecommendation(current(two), 2)),
+                controller.getFriendRecommendations(first.getId(), 2));
+        assertEquals(3, controller.getFriendRecommendations(first.getId(), null).size());
+
+        // добавление в друзья сбрасывает закэшированный ответ
+        controller.addFriend(first.getId(), three.getId());
+        controller.addFriend(one.getId(), friends.get(2).getId());
+        assertEquals(List.of(new FriendRecommendation(current(one), 2), new FriendRecommendation(current(two), 2)),
+                controller.getFriendRecommendations(first.getId(), 2));
+        assertThrows(ValidationException.class, () -> controller.getFriendRecommendations(first.getId(), 0));
+    }
+
+    @Test
+    void shouldRecommendFilmsLikedBySimilarUsers() {
+        User first = controller.create(user);
+        User similar = controller.create(newUser("beta"));
+        User other = controller.create(newUser("gamma"));
+        List<Long> films = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            films.add(filmService.create(newFilm("film" + i)).getId());
+        }
+        like(first, films.get(0), films.get(1));
+        like(similar, films.get(0), films.get(1), films.get(2), films.get(3));
+        like(other, films.get(0), films.get(4));
+
+        // вес соседа - число общих лайков: 2 у similar и 1 у other
+        assertEquals(List.of(films.get(2), films.get(3), films.get(4)), filmIds(first));
+        assertTrue(controller.getFilmRecommendations(controller.create(newUser("delta")).getId(), null).isEmpty());
+
+        // изменения лайков пользователя и соседей сбрасывают закэшированный ответ
+        like(first, films.get(2));
+        assertEquals(List.of(films.get(3), films.get(4)), filmIds(first));
+        filmService.removeLike(films.get(4), other.getId());
+        assertEquals(List.of(films.get(3)), filmIds(first));
+    }
+
+    @Test
+    void shouldListLikedFilmsAndDropLikesOfDeletedUser() {
+        User first = controller.create(user);
+        User second = controller.create(newUser("beta"));
+        Long film = filmService.create(newFilm("liked")).getId();
+        Long other = filmService.create(newFilm("other")).getId();
+        like(first, other, film);
+        like(second, film);
+        assertEquals(List.of(film, other), controller.getLikedFilms(first.getId()).stream().map(Film::getId).toList());
+        assertEquals(2, filmService.getPopular(1).getFirst().getLikes().size());
+
+        // лайки удалённого пользователя снимаются по обратному индексу
+        userService.delete(second.getId());
+        assertEquals(List.of(first.getId()), List.copyOf(filmService.findById(film).getLikes()));
+        assertEquals(2, filmStorage.countLikes());
+        assertEquals(0, filmStorage.findLikedFilmIds(second.getId()).length);
+        filmService.removeLike(other, first.getId());
+        assertEquals(List.of(film), controller.getLikedFilms(first.getId()).stream().map(Film::getId).toList());
+        assertThrows(NotFoundException.class, () -> controller.getLikedFilms(second.getId()));
+    }
+
+    @Test
+    void shouldRefuseLikesOfDeletedUserThatPassedTheUserCheck() throws Exception {
+        Long film = filmService.create(newFilm("liked")).getId();
+        User deleted = controller.create(user);
+        userService.delete(deleted.getId());
+        // так доходит до хранилища лайк, проверивший пользователя до его удаления
+        assertThrows(NotFoundException.class, () -> filmStorage.addLike(film, deleted.getId()));
+        assertEquals(List.of(BatchStatus.NOT_FOUND), filmStorage.addLikes(List.of(new Like(film, deleted.getId()))));
+        assertTrue(filmService.findById(film).getLikes().isEmpty());
+
+        List<Long> films = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            films.add(filmService.create(newFilm("raced" + i)).getId());
+        }
+        for (int round = 0; round < 200; round++) {
+            Long userId = controller.create(newUser("raced" + round)).getId();
+            Thread liker = Thread.ofPlatform().start(() -> {
+                for (Long filmId : films) {
+                    try {
+                        filmService.addLike(filmId, userId);
+                    } catch (NotFoundException e) {
+                        return;
+                    }
+                }
+            });
+            userService.delete(userId);
+            liker.join();
+            assertEquals(0, filmStorage.findLikedFilmIds(userId).length);
+        }
+        assertEquals(0, filmStorage.countLikes());
+        for (Long filmId : films) {
+            assertTrue(filmService.findById(filmId).getLikes().isEmpty());
+        }
+    }
+
+    private void like(User liker, Long... films) {
+        for (Long filmId : films) {
+            filmService.addLike(filmId, liker.getId());
+        }
+    }
+
+    private List<Long> filmIds(User recipient) {
+        return controller.getFilmRecommendations(recipient.getId(), 3).stream().map(Film::getId).toList();
+    }
+
+    private static Film newFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+
+    // хранилище не меняет выданных объектов, текущее состояние читается заново
+    private User current(User user) {
+        return userStorage.findById(user.getId()).orElseThrow();
+    }
+
+    private static WebRequest request() {
+        return new ServletWebRequest(new MockHttpServletRequest());
+    }
+
+    private User newUser(String login) {
+        User newUser = new User();
+        newUser.setEmail(login + "@mail.ru");
+        newUser.setLogin(login);
+        newUser.setBirthday(LocalDate.of(2000, 1, 1));
+        return newUser;
+    }
 }
@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.JdbcBatchWriter;
+import ru.yandex.practicum.filmorate.storage.jdbc.JdbcFilmStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.JdbcUserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledFilmStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledUserStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// при spring.threads.virtual.enabled=true запросы выполняются виртуальными потоками.
+// виртуальный поток, заблокированный внутри synchronized, держит поток-носитель (pinning),
+// поэтому хранилища ждут только на ReentrantLock и CompletableFuture; проверяем это событиями JFR
+public class VirtualThreadPinningTests {
+    private static final int TASKS = 2000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldNotPinCarrierThreadsInMemoryStorages() throws Exception {
+        assertNoPinning(new InMemoryFilmStorage(), new InMemoryUserStorage());
+    }
+
+    @Test
+    void shouldNotPinCarrierThreadsInJournaledStorages() throws Exception {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        try (StorageJournal journal = StorageJournal.open(directory, false, films, users)) {
+            assertNoPinning(new JournaledFilmStorage(films, journal), new JournaledUserStorage(users, journal));
+        }
+    }
+
+    @Test
+    void shouldNotPinCarrierThreadsInJdbcStorages() throws Exception {
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl("jdbc:h2:mem:pinning;DB_CLOSE_DELAY=-1");
+            Flyway.configure().dataSource(dataSource).load().migrate();
+            NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(dataSource);
+            TransactionTemplate transaction = new TransactionTemplate(new JdbcTransactionManager(dataSource));
+            JdbcBatchWriter batchWriter = new JdbcBatchWriter(jdbc, transaction);
+            try {
+                assertNoPinning(new JdbcFilmStorage(jdbc, transaction, batchWriter),
+                        new JdbcUserStorage(jdbc, transaction, batchWriter));
+            } finally {
+                batchWriter.close();
+            }
+        }
+    }
+
+    // много виртуальных потоков борются за несколько фильмов и пользователей:
+    // ожидание блокировок и записи изменений неизбежно
+    private void assertNoPinning(FilmStorage filmStorage, UserStorage userStorage) throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            userIds.add(userStorage.create(newUser("user" + i)).getId());
+        }
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            filmIds.add(filmStorage.create(newFilm("film" + i)).getId());
+        }
+
+        List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+        try (RecordingStream recording = new RecordingStream();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < TASKS; i++) {
+                long filmId = filmIds.get(i % filmIds.size());
+                long userId = userIds.get(i % userIds.size());
+                long friendId = userIds.get((i * 7 + 1) % userIds.size());
+                futures.add(executor.submit(() -> {
+                    filmStorage.addLike(filmId, userId);
+                    filmStorage.getPopular(3);
+                    if (userId != friendId)
+                        userStorage.link(userId, friendId);
+                    filmStorage.removeLike(filmId, userId);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            recording.stop();
+        }
+        assertTrue(pinned.isEmpty(), () -> "Виртуальные потоки закреплены за носителем:\n" + pinned.stream()
+                .map(event -> event.getStackTrace() == null ? event.toString() : event.getStackTrace().getFrames()
+                        .stream().limit(8).map(Object::toString).collect(Collectors.joining("\n  ")))
+                .distinct()
+                .collect(Collectors.joining("\n---\n")));
+    }
+
+    private Film newFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2002, 4, 14));
+        film.setDuration(125);
+        return film;
+    }
+
+    private User newUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+}